@@ -6,4 +6,11 @@ public interface Address {
 
     int port();
 
+    /**
+     * Packed binary form of the address, unique per host and port: IPv4 address in bits 16..47, port in bits 0..15.
+     * Meant to be used by codecs and as a key instead of concatenated host and port strings.
+     * @return host and port packed into a single long
+     */
+    long id();
+
 }
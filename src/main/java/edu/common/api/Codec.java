@@ -0,0 +1,21 @@
+package edu.common.api;
+
+import java.nio.ByteBuffer;
+
+public interface Codec {
+
+    /**
+     * Encode the payload into the buffer, starting at buffer's current position.
+     * @param payload payload to be encoded
+     * @param buffer target buffer, its position is advanced past the encoded payload
+     */
+    void encode(Payload payload, ByteBuffer buffer);
+
+    /**
+     * Decode the payload from the buffer, starting at buffer's current position.
+     * @param buffer source buffer, its position is advanced past the decoded payload
+     * @return decoded payload
+     */
+    Payload decode(ByteBuffer buffer);
+
+}
@@ -0,0 +1,26 @@
+package edu.common.api;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire encoding of one class of messages, registered with a codec under a type id.
+ * @param <T> class of messages
+ */
+public interface MessageCodec<T> {
+
+    /**
+     * Encode the message into the buffer, starting at buffer's current position.
+     * @param message message to be encoded
+     * @param buffer target buffer, its position is advanced past the encoded message
+     */
+    void encode(T message, ByteBuffer buffer);
+
+    /**
+     * Decode the message from the buffer, starting at buffer's current position.
+     * @param buffer source buffer, its position is advanced past the decoded message
+     * @param version protocol version the message was encoded with, messages of older versions must be accepted
+     * @return decoded message
+     */
+    T decode(ByteBuffer buffer, int version);
+
+}
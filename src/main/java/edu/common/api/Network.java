@@ -4,6 +4,8 @@ import edu.kvstore.api.Ring;
 
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public interface Network {
 
@@ -36,6 +38,22 @@ public interface Network {
          */
         Queue<Payload> queue();
 
+        /**
+         * Wait for the next message received by the listener, without spinning.
+         * @param timeout how long to wait before giving up
+         * @param unit unit of the timeout
+         * @return next message, or null if none was received within the timeout
+         * @throws InterruptedException if interrupted while waiting
+         */
+        Payload poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+        /**
+         * Get notified of the next message received by the listener. The message completing the future
+         * is taken from the listener and is never seen in the queue.
+         * @return future completed with the next message
+         */
+        CompletableFuture<Payload> next();
+
     }
 
     /**
@@ -1,21 +1,34 @@
 package edu.common.api;
 
+/**
+ * Message sent over the network. Membership and key-value messages are exposed as fields of their own,
+ * messages of any other kind (registered with the codec) only as `message`.
+ */
 public class Payload {
 
     public final edu.membership.api.Message member;
     public final edu.kvstore.api.Message keyval;
+    public final Object message;
 
-    private Payload(edu.membership.api.Message member, edu.kvstore.api.Message keyval) {
+    private Payload(edu.membership.api.Message member, edu.kvstore.api.Message keyval, Object message) {
         this.member = member;
         this.keyval = keyval;
+        this.message = message;
     }
 
     public static Payload of(edu.membership.api.Message member) {
-        return new Payload(member, null);
+        return new Payload(member, null, member);
     }
 
     public static Payload of(edu.kvstore.api.Message keyval) {
-        return new Payload(null, keyval);
+        return new Payload(null, keyval, keyval);
+    }
+
+    public static Payload of(Object message) {
+        if (message instanceof edu.membership.api.Message) return of((edu.membership.api.Message) message);
+        if (message instanceof edu.kvstore.api.Message) return of((edu.kvstore.api.Message) message);
+        if (message == null) throw new NullPointerException();
+        return new Payload(null, null, message);
     }
 
     @Override
@@ -25,19 +38,19 @@ public class Payload {
 
         Payload payload = (Payload) o;
 
-        return (member != null ? member.equals(payload.member) : payload.member == null) &&
-                (keyval != null ? keyval.equals(payload.keyval) : payload.keyval == null);
+        return message.equals(payload.message);
     }
 
     @Override
     public int hashCode() {
-        int result = member != null ? member.hashCode() : 0;
-        result = 31 * result + (keyval != null ? keyval.hashCode() : 0);
-        return result;
+        return message.hashCode();
     }
 
     @Override
     public String toString() {
+        if (member == null && keyval == null) {
+            return "Payload{message=" + message + '}';
+        }
         return "Payload{" +
                 "member=" + member +
                 ", keyval=" + keyval +
@@ -0,0 +1,67 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.MessageCodec;
+import edu.kvstore.api.Batch;
+import edu.kvstore.api.Message;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static edu.common.impl.Wire.*;
+
+/**
+ * Key-value batch: type, seqNr, sender, replica flag, number of keys, [key, value presence flag, [value]] per key.
+ */
+class BatchCodec implements MessageCodec<Batch> {
+    private static final byte HI = 1;
+    private static final byte LO = 0;
+
+    private static final Message.Type TYPES[] = Message.Type.values(); // by ordinal: append new types only
+
+    @Override
+    public Batch decode(ByteBuffer buffer, int version) {
+        int typeIdx = getVarintInt(buffer);
+        if (typeIdx >= TYPES.length) {
+            throw new IllegalStateException("Invalid message type");
+        }
+        Message.Type type = TYPES[typeIdx];
+
+        long seq = getVarint(buffer);
+        Address sender = getAddress(buffer);
+        boolean replica = buffer.get() > 0;
+
+        int n = getVarintInt(buffer);
+        if (n < 0 || n > buffer.remaining()) {
+            throw new IllegalStateException("Invalid number of keys: " + n);
+        }
+        List<String> keys = new ArrayList<>(n);
+        List<String> values = new ArrayList<>(n);
+        for (int i=0; i<n; i++) {
+            keys.add(getString(buffer));
+            values.add((buffer.get() == HI) ? getString(buffer) : null);
+        }
+        return new Batch(type, seq, sender, keys, values, replica);
+    }
+
+    @Override
+    public void encode(Batch batch, ByteBuffer buffer) {
+        putVarint(buffer, batch.type.ordinal());
+        putVarint(buffer, batch.seqNr);
+        putAddress(buffer, batch.sender);
+        buffer.put(batch.replica ? HI : LO);
+        int n = batch.keys.size();
+        putVarint(buffer, n);
+        for (int i=0; i<n; i++) {
+            putString(buffer, batch.keys.get(i));
+            String value = batch.values.get(i);
+            if (value != null) {
+                buffer.put(HI);
+                putString(buffer, value);
+            } else {
+                buffer.put(LO);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package edu.common.impl;
+
+import edu.common.api.Codec;
+import edu.common.api.MessageCodec;
+import edu.common.api.Payload;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static edu.common.impl.Wire.*;
+
+/**
+ * Compact binary codec: varint numbers and lengths, UTF-8 keys and values.
+ * Payload: protocol version (byte), type id (varint), message encoded by the codec registered for the type id.
+ * Membership messages are registered as type 1 ({@link MemberCodec}), key-value messages as type 2
+ * ({@link KeyvalCodec}), key-value batches as type 3 ({@link BatchCodec}). Message types within a class are
+ * written by ordinal, so they may only be appended.
+ */
+public class BinaryCodec implements Codec {
+    public static final int VERSION = 1;
+    public static final int MIN_VERSION = 1;
+
+    public static final int MEMBER = 1;
+    public static final int KEYVAL = 2;
+    public static final int BATCH = 3;
+
+    private Entry entries[] = new Entry[0]; // by type id, 0 is reserved
+
+    public BinaryCodec() {
+        this(true);
+    }
+
+    /**
+     * @param shareAddresses write member's IP only when it differs from the previous member's IP
+     */
+    public BinaryCodec(boolean shareAddresses) {
+        register(MEMBER, edu.membership.api.Message.class, new MemberCodec(shareAddresses));
+        register(KEYVAL, edu.kvstore.api.Message.class, new KeyvalCodec());
+        register(BATCH, edu.kvstore.api.Batch.class, new BatchCodec());
+    }
+
+    /**
+     * Register the codec of a class of messages under the type id, to send them as payloads.
+     * Must be done before the codec is used, the same way on every node.
+     * @param typeId id of the class on the wire, small positive number
+     * @return this codec
+     */
+    public synchronized <T> BinaryCodec register(int typeId, Class<T> type, MessageCodec<T> codec) {
+        if (typeId <= 0 || typeId > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid type id: " + typeId);
+        }
+        for (Entry entry : entries) {
+            if (entry != null && (entry.typeId == typeId || entry.type == type)) {
+                throw new IllegalArgumentException("Already registered: " + typeId + " " + type.getName());
+            }
+        }
+        Entry copy[] = Arrays.copyOf(entries, Math.max(entries.length, typeId + 1));
+        copy[typeId] = new Entry(typeId, type, codec);
+        entries = copy;
+        return this;
+    }
+
+    private Entry entry(Class<?> type) {
+        for (Entry entry : entries) {
+            if (entry != null && entry.type == type) {
+                return entry;
+            }
+        }
+        throw new IllegalStateException("Unregistered message type: " + type.getName());
+    }
+
+    @Override
+    public void encode(Payload payload, ByteBuffer buffer) {
+        Entry entry = entry(payload.message.getClass());
+        buffer.put((byte) VERSION);
+        putVarint(buffer, entry.typeId);
+        entry.encode(payload.message, buffer);
+    }
+
+    @Override
+    public Payload decode(ByteBuffer buffer) {
+        int version = buffer.get() & 0xFF;
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IllegalStateException("Unsupported protocol version: " + version);
+        }
+        int typeId = getVarintInt(buffer);
+        Entry all[] = entries;
+        Entry entry = (typeId > 0 && typeId < all.length) ? all[typeId] : null;
+        if (entry == null) {
+            throw new IllegalStateException("Invalid payload type: " + typeId);
+        }
+        return Payload.of(entry.codec.decode(buffer, version));
+    }
+
+    private static class Entry {
+        final int typeId;
+        final Class<?> type;
+        final MessageCodec<?> codec;
+
+        Entry(int typeId, Class<?> type, MessageCodec<?> codec) {
+            this.typeId = typeId;
+            this.type = type;
+            this.codec = codec;
+        }
+
+        @SuppressWarnings("unchecked")
+        void encode(Object message, ByteBuffer buffer) {
+            ((MessageCodec<Object>) codec).encode(message, buffer);
+        }
+    }
+}
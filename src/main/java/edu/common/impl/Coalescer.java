@@ -0,0 +1,194 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.Codec;
+import edu.common.api.Payload;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Packs payloads sent to the same target into a single datagram: [frame byte] ([length (short)] [payload])*.
+ * A batch is flushed when the next payload does not fit into it, or when flush delay has passed since
+ * the first payload was added to it, whichever comes first.
+ */
+public class Coalescer implements AutoCloseable {
+    private static final int LENGTH_SIZE = 2;
+
+    interface Transmitter {
+        void transmit(Address target, ByteBuffer datagram) throws IOException;
+    }
+
+    private final Codec codec;
+    private final byte frame;
+    private final int maxBatchBytes;
+    private final long flushDelayMicros;
+    private final Transmitter transmitter;
+
+    private final ConcurrentHashMap<Address, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong payloads = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    Coalescer(Codec codec, byte frame, int maxBatchBytes, long flushDelayMicros, Transmitter transmitter) {
+        this.codec = codec;
+        this.frame = frame;
+        this.maxBatchBytes = maxBatchBytes;
+        this.flushDelayMicros = flushDelayMicros;
+        this.transmitter = transmitter;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "udp-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add the payload to the target's batch. A payload that does not fit into an empty batch is handed to
+     * `direct` after the target's pending batch is flushed, under the batch's lock, so that payloads to a target
+     * go out in the order they were added.
+     * @return `true` if the payload was batched, otherwise the result of the direct send
+     */
+    boolean add(Address target, Payload payload, BiPredicate<Address, Payload> direct) throws IOException {
+        Batch batch = batches.computeIfAbsent(target, Batch::new);
+        synchronized (batch) {
+            if (batch.append(payload)) {
+                return true;
+            }
+            flush(batch);
+            if (batch.append(payload)) {
+                return true;
+            }
+            return direct.test(target, payload);
+        }
+    }
+
+    private void flush(Batch batch) throws IOException {
+        if (batch.count == 0) {
+            return;
+        }
+        flushes.incrementAndGet();
+        payloads.addAndGet(batch.count);
+        maxBatchSize.accumulateAndGet(batch.count, Math::max);
+
+        ByteBuffer buffer = batch.buffer;
+        buffer.flip();
+        try {
+            transmitter.transmit(batch.target, buffer);
+        } finally {
+            batch.reset();
+        }
+    }
+
+    private void flushLater(Batch batch) {
+        timer.schedule(() -> {
+            synchronized (batch) {
+                batch.scheduled = false;
+                try {
+                    flush(batch);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, flushDelayMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @return number of datagrams sent, each carrying a batch
+     */
+    public long flushes() {
+        return flushes.get();
+    }
+
+    /**
+     * @return number of payloads sent in batches
+     */
+    public long payloads() {
+        return payloads.get();
+    }
+
+    /**
+     * @return largest number of payloads sent in a single batch
+     */
+    public long maxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    /**
+     * @return average number of payloads per batch
+     */
+    public double averageBatchSize() {
+        long n = flushes.get();
+        return (n == 0) ? 0.0 : (double) payloads.get() / n;
+    }
+
+    @Override
+    public void close() {
+        // flush before stopping the timer: interrupting a flush in progress would close the sending channel
+        for (Batch batch : batches.values()) {
+            synchronized (batch) {
+                try {
+                    flush(batch);
+                } catch (IOException e) {
+                    /* ignore */
+                }
+            }
+        }
+        timer.shutdownNow();
+    }
+
+    private class Batch {
+        final Address target;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(maxBatchBytes);
+        int count = 0;
+        boolean scheduled = false;
+
+        Batch(Address target) {
+            this.target = target;
+            reset();
+        }
+
+        void reset() {
+            buffer.clear();
+            buffer.put(frame);
+            count = 0;
+        }
+
+        /**
+         * Encode the payload right into the batch buffer, or leave the buffer untouched if it does not fit.
+         */
+        boolean append(Payload payload) {
+            final int start = buffer.position();
+            if (buffer.remaining() <= LENGTH_SIZE) {
+                return false;
+            }
+            try {
+                buffer.position(start + LENGTH_SIZE);
+                codec.encode(payload, buffer);
+            } catch (BufferOverflowException e) {
+                buffer.position(start);
+                return false;
+            } catch (RuntimeException e) {
+                buffer.position(start);
+                throw e;
+            }
+            buffer.putShort(start, (short) (buffer.position() - start - LENGTH_SIZE));
+            count += 1;
+            if (!scheduled) {
+                scheduled = true;
+                flushLater(this);
+            }
+            return true;
+        }
+    }
+
+}
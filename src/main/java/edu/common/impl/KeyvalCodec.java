@@ -0,0 +1,85 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.MessageCodec;
+import edu.kvstore.api.Message;
+
+import java.nio.ByteBuffer;
+
+import static edu.common.impl.Wire.*;
+
+/**
+ * Key-value message: type, seqNr, sender, key, value presence flag, [value], replica flag.
+ */
+class KeyvalCodec implements MessageCodec<Message> {
+    private static final byte HI = 1;
+    private static final byte LO = 0;
+
+    private static final Message.Type TYPES[] = Message.Type.values(); // by ordinal: append new types only
+
+    /**
+     * Only the header and the key are decoded: the message is copied out of the buffer once, the value is left
+     * as UTF-8 bytes in that copy, and the copy is kept to forward the message without encoding it again.
+     */
+    @Override
+    public Message decode(ByteBuffer buffer, int version) {
+        final int start = buffer.position();
+        int typeIdx = getVarintInt(buffer);
+        if (typeIdx >= TYPES.length) {
+            throw new IllegalStateException("Invalid message type");
+        }
+        Message.Type type = TYPES[typeIdx];
+
+        long seq = getVarint(buffer);
+        Address sender = getAddress(buffer);
+        String key = getString(buffer);
+
+        int valueOffset = -1;
+        int valueLength = 0;
+        if (buffer.get() == HI) {
+            valueLength = getVarintInt(buffer);
+            if (valueLength < 0 || valueLength > buffer.remaining()) {
+                throw new IllegalStateException("Invalid value length: " + valueLength);
+            }
+            valueOffset = buffer.position() - start;
+            buffer.position(buffer.position() + valueLength);
+        }
+
+        boolean replica = buffer.get() > 0;
+
+        byte bytes[] = new byte[buffer.position() - start];
+        ByteBuffer source = buffer.duplicate();
+        source.position(start);
+        source.get(bytes);
+
+        ByteBuffer value = (valueOffset < 0) ? null : ByteBuffer.wrap(bytes, valueOffset, valueLength).slice();
+        // bytes of an older version are not forwarded as is, they would be sent under the current version
+        ByteBuffer encoded = (version == BinaryCodec.VERSION) ? ByteBuffer.wrap(bytes) : null;
+        return new Message(type, seq, sender, key, value, replica, encoded);
+    }
+
+    @Override
+    public void encode(Message message, ByteBuffer buffer) {
+        ByteBuffer encoded = message.encoded();
+        if (encoded != null) {
+            buffer.put(encoded);
+            return;
+        }
+        putVarint(buffer, message.type.ordinal());
+        putVarint(buffer, message.seqNr);
+        putAddress(buffer, message.sender);
+        putString(buffer, message.key);
+        ByteBuffer valueBytes = message.valueBytes();
+        if (valueBytes != null) {
+            buffer.put(HI);
+            putVarint(buffer, valueBytes.remaining());
+            buffer.put(valueBytes);
+        } else if (message.value() != null) {
+            buffer.put(HI);
+            putString(buffer, message.value());
+        } else {
+            buffer.put(LO);
+        }
+        buffer.put(message.replica ? HI : LO);
+    }
+}
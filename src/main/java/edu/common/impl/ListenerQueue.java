@@ -0,0 +1,318 @@
+package edu.common.impl;
+
+import edu.common.api.Payload;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of payloads received by a listener. Payloads are kept in array-backed deques (no node
+ * allocation per payload) that grow on demand up to the capacity; what happens to a payload that arrives when
+ * the queue is full is decided by the overflow policy. Counts accepted and dropped payloads and
+ * the largest size the queue has reached. Consumers may block on {@link #poll(long, TimeUnit)} or
+ * register for the next payload with {@link #next()} instead of spinning.
+ */
+public class ListenerQueue extends AbstractQueue<Payload> {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    public enum Overflow {
+        /** Drop the payload at the head of the queue to make room for the new one */
+        DROP_OLDEST,
+        /** Reject the new payload */
+        DROP_NEWEST,
+        /**
+         * Membership payloads are queued apart from key-value ones and are always polled first;
+         * a new membership payload makes room by dropping the oldest key-value payload, a new key-value
+         * payload is rejected when the queue is full.
+         */
+        PRIORITIZE_MEMBERSHIP
+    }
+
+    private final int capacity;
+    private final Overflow overflow;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<CompletableFuture<Payload>> waiters = new ArrayDeque<>();
+
+    private final ArrayDeque<Payload> primary = new ArrayDeque<>();
+    private final ArrayDeque<Payload> secondary = new ArrayDeque<>(); // key-value payloads with PRIORITIZE_MEMBERSHIP
+
+    private long enqueued = 0L;
+    private long dropped = 0L;
+    private int highWaterMark = 0;
+
+    public ListenerQueue() {
+        this(DEFAULT_CAPACITY, Overflow.DROP_OLDEST);
+    }
+
+    public ListenerQueue(int capacity, Overflow overflow) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.overflow = overflow;
+    }
+
+    private int count() {
+        return primary.size() + secondary.size();
+    }
+
+    private ArrayDeque<Payload> lane(Payload payload) {
+        return (overflow == Overflow.PRIORITIZE_MEMBERSHIP && payload.member == null) ? secondary : primary;
+    }
+
+    /**
+     * Make room for the payload according to overflow policy.
+     * @return `false` if the payload must be rejected
+     */
+    private boolean evict(Payload payload) {
+        switch (overflow) {
+            case DROP_OLDEST:
+                primary.poll();
+                return true;
+            case PRIORITIZE_MEMBERSHIP:
+                if (payload.member != null && !secondary.isEmpty()) {
+                    secondary.poll();
+                    return true;
+                }
+                return false;
+            case DROP_NEWEST:
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public boolean offer(Payload payload) {
+        if (payload == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            CompletableFuture<Payload> waiter;
+            lock.lock();
+            try {
+                waiter = waiters.poll();
+                if (waiter == null) {
+                    return enqueue(payload);
+                }
+                enqueued += 1;
+            } finally {
+                lock.unlock();
+            }
+            // complete outside of the lock, as completion runs dependent actions
+            if (waiter.complete(payload)) {
+                return true;
+            }
+            lock.lock();
+            try {
+                enqueued -= 1; // waiter was cancelled meanwhile, hand the payload to the next one
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Offer payloads in order, taking the lock once for all of them unless someone waits for the next payload.
+     * @return number of payloads accepted
+     */
+    public int offerAll(List<Payload> payloads) {
+        int accepted = 0;
+        int i = 0;
+        lock.lock();
+        try {
+            if (waiters.isEmpty()) {
+                for (; i < payloads.size(); i++) {
+                    if (enqueue(payloads.get(i))) {
+                        accepted += 1;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (; i < payloads.size(); i++) {
+            if (offer(payloads.get(i))) {
+                accepted += 1;
+            }
+        }
+        return accepted;
+    }
+
+    private boolean enqueue(Payload payload) {
+        if (count() >= capacity) {
+            dropped += 1;
+            if (!evict(payload)) {
+                return false;
+            }
+        }
+        lane(payload).offer(payload);
+        enqueued += 1;
+        int size = count();
+        if (size > highWaterMark) {
+            highWaterMark = size;
+        }
+        notEmpty.signal();
+        return true;
+    }
+
+    /**
+     * Wait for a payload to become available.
+     * @return the payload, or null if the queue remained empty for the timeout
+     */
+    public Payload poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count() == 0) {
+                if (nanos <= 0L) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            Payload payload = primary.poll();
+            return (payload != null) ? payload : secondary.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return future completed with the next payload: right away if one is queued, otherwise by the next offer
+     */
+    public CompletableFuture<Payload> next() {
+        lock.lock();
+        try {
+            Payload payload = primary.poll();
+            if (payload == null) {
+                payload = secondary.poll();
+            }
+            if (payload != null) {
+                return CompletableFuture.completedFuture(payload);
+            }
+            CompletableFuture<Payload> future = new CompletableFuture<>();
+            waiters.offer(future);
+            return future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Payload poll() {
+        lock.lock();
+        try {
+            Payload payload = primary.poll();
+            return (payload != null) ? payload : secondary.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Payload peek() {
+        lock.lock();
+        try {
+            Payload payload = primary.peek();
+            return (payload != null) ? payload : secondary.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            primary.clear();
+            secondary.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return iterator over a snapshot of the queue, in polling order
+     */
+    @Override
+    public Iterator<Payload> iterator() {
+        lock.lock();
+        try {
+            List<Payload> snapshot = new ArrayList<>(count());
+            snapshot.addAll(primary);
+            snapshot.addAll(secondary);
+            return snapshot.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of payloads accepted into the queue
+     */
+    public long enqueued() {
+        lock.lock();
+        try {
+            return enqueued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of payloads dropped because the queue was full, either rejected or evicted
+     */
+    public long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return largest number of payloads held by the queue at once
+     */
+    public int highWaterMark() {
+        lock.lock();
+        try {
+            return highWaterMark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ListenerQueue{" +
+                "size=" + size() +
+                ", capacity=" + capacity +
+                ", overflow=" + overflow +
+                ", enqueued=" + enqueued() +
+                ", dropped=" + dropped() +
+                ", highWaterMark=" + highWaterMark() +
+                '}';
+    }
+}
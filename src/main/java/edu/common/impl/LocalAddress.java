@@ -19,6 +19,11 @@ public class LocalAddress implements Address {
         return port;
     }
 
+    @Override
+    public long id() {
+        return port;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -4,34 +4,100 @@ import edu.common.api.Address;
 import edu.common.api.Network;
 import edu.common.api.Payload;
 
+import java.util.ArrayDeque;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * In-process network: every address resolves once to a {@link Route} that points straight at the mailbox
+ * of whoever listens to the address, so sending is a map lookup (none if the route is kept) and an offer.
+ * Mailboxes are either listener queues or handlers called synchronously by the sender. Sending to an address
+ * no one listens to leaves nothing behind: a route is dropped once its listener closes, unless a sender kept it.
+ */
 public class LocalNetwork implements Network {
 
-    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Payload>> listeners = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Address, Route> routes = new ConcurrentHashMap<>();
+    private final Supplier<ListenerQueue> queues;
 
-    private String key(Address address) {
-        return address.host() + ":" + address.port();
+    private static final ThreadLocal<Trampoline> trampolines = ThreadLocal.withInitial(Trampoline::new);
+
+    public LocalNetwork() {
+        this(ListenerQueue::new);
+    }
+
+    /**
+     * @param queues factory of bounded queues for listeners
+     */
+    public LocalNetwork(Supplier<ListenerQueue> queues) {
+        this.queues = queues;
+    }
+
+    /**
+     * Resolve the address to its route, to keep. The route stays valid for the lifetime of the network, whoever
+     * listens to the address, so senders may keep it to skip the lookup altogether.
+     */
+    public Route route(Address target) {
+        Route route = routes.get(target);
+        if (route == null || !route.isKept) {
+            route = routes.compute(target, (a, r) -> {
+                Route kept = (r != null) ? r : new Route();
+                kept.isKept = true;
+                return kept;
+            });
+        }
+        return route;
+    }
+
+    /**
+     * @return number of addresses with a route: listened to, or resolved by senders to keep
+     */
+    public int routes() {
+        return routes.size();
     }
 
     @Override
     public boolean send(Address target, Payload payload) {
-        String key = key(target);
-        if (listeners.containsKey(key)) {
-            listeners.get(key).offer(payload);
-            return true;
-        } else {
-            return false;
-        }
+        Route route = routes.get(target);
+        return (route != null) && route.send(payload);
+    }
+
+    /**
+     * Send payloads to the target in order, at once.
+     * @return number of payloads accepted
+     */
+    public int send(Address target, List<Payload> payloads) {
+        Route route = routes.get(target);
+        return (route != null) ? route.send(payloads) : 0;
+    }
+
+    private Route attach(Address address, Mailbox mailbox) {
+        return routes.compute(address, (a, r) -> {
+            Route route = (r != null) ? r : new Route();
+            route.set(mailbox);
+            return route;
+        });
+    }
+
+    /**
+     * Stop delivering to the mailbox, and drop the route if no one else listens and no sender kept it.
+     */
+    private void detach(Address address, Mailbox mailbox) {
+        routes.computeIfPresent(address, (a, route) -> {
+            route.clear(mailbox);
+            return (route.mailbox == null && !route.isKept) ? null : route;
+        });
     }
 
     @Override
     public Listener listen(final Address address) {
-        final ConcurrentLinkedQueue<Payload> queue = new ConcurrentLinkedQueue<>();
-
-        listeners.put(key(address), queue);
+        final ListenerQueue queue = queues.get();
+        final Mailbox mailbox = new QueueMailbox(queue);
+        attach(address, mailbox);
 
         return new Listener() {
             @Override
@@ -39,12 +105,136 @@ public class LocalNetwork implements Network {
                 return queue;
             }
 
+            @Override
+            public Payload poll(long timeout, TimeUnit unit) throws InterruptedException {
+                return queue.poll(timeout, unit);
+            }
+
+            @Override
+            public CompletableFuture<Payload> next() {
+                return queue.next();
+            }
+
             @Override
             public void close() {
-                listeners.remove(key(address));
+                detach(address, mailbox);
                 queue.clear();
             }
         };
     }
 
+    /**
+     * Listen to the address with a handler called on the sending thread, so that a payload is handled before
+     * send returns. A payload sent from within a handler is handled after that handler returns (not nested
+     * in it), in the order of sending.
+     * @return closing it stops listening
+     */
+    public AutoCloseable listen(final Address address, final Consumer<Payload> handler) {
+        final Mailbox mailbox = new HandlerMailbox(handler);
+        attach(address, mailbox);
+        return () -> detach(address, mailbox);
+    }
+
+    /**
+     * Direct reference to the mailbox listening to an address, or to nothing while no one listens.
+     */
+    public static class Route {
+        private volatile Mailbox mailbox;
+        private volatile boolean isKept = false; // resolved by a sender, that may hold on to it
+
+        private Route() {
+        }
+
+        public boolean send(Payload payload) {
+            Mailbox mailbox = this.mailbox;
+            return (mailbox != null) && mailbox.deliver(payload);
+        }
+
+        /**
+         * @return number of payloads accepted
+         */
+        public int send(List<Payload> payloads) {
+            Mailbox mailbox = this.mailbox;
+            return (mailbox != null) ? mailbox.deliver(payloads) : 0;
+        }
+
+        private synchronized void set(Mailbox mailbox) {
+            this.mailbox = mailbox;
+        }
+
+        private synchronized void clear(Mailbox mailbox) {
+            if (this.mailbox == mailbox) {
+                this.mailbox = null;
+            }
+        }
+    }
+
+    private interface Mailbox {
+        boolean deliver(Payload payload);
+
+        int deliver(List<Payload> payloads);
+    }
+
+    private static class QueueMailbox implements Mailbox {
+        private final ListenerQueue queue;
+
+        QueueMailbox(ListenerQueue queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean deliver(Payload payload) {
+            return queue.offer(payload);
+        }
+
+        @Override
+        public int deliver(List<Payload> payloads) {
+            return queue.offerAll(payloads);
+        }
+    }
+
+    private static class HandlerMailbox implements Mailbox {
+        private final Consumer<Payload> handler;
+
+        HandlerMailbox(Consumer<Payload> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean deliver(Payload payload) {
+            Trampoline trampoline = trampolines.get();
+            if (trampoline.isActive) {
+                trampoline.pending.add(() -> handler.accept(payload));
+                return true;
+            }
+            trampoline.isActive = true;
+            try {
+                handler.accept(payload);
+                Runnable next;
+                while ((next = trampoline.pending.poll()) != null) {
+                    next.run();
+                }
+            } finally {
+                trampoline.isActive = false;
+                trampoline.pending.clear();
+            }
+            return true;
+        }
+
+        @Override
+        public int deliver(List<Payload> payloads) {
+            for (Payload payload : payloads) {
+                deliver(payload);
+            }
+            return payloads.size();
+        }
+    }
+
+    /**
+     * Payloads to handlers sent while a handler runs on the thread, delivered when the outermost handler returns.
+     */
+    private static class Trampoline {
+        final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        boolean isActive = false;
+    }
 }
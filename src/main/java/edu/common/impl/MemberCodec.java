@@ -0,0 +1,115 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.MessageCodec;
+import edu.membership.api.Member;
+import edu.membership.api.Message;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static edu.common.impl.Wire.*;
+
+/**
+ * Membership message: type, sender member, [flags, number of members, members] for MEMBER_LIST.
+ */
+class MemberCodec implements MessageCodec<Message> {
+    private static final byte SHARED_ADDRESSES = 1;
+
+    private static final Message.Type TYPES[] = Message.Type.values(); // by ordinal: append new types only
+
+    private final boolean shareAddresses;
+
+    /**
+     * @param shareAddresses write member's IP only when it differs from the previous member's IP
+     */
+    MemberCodec(boolean shareAddresses) {
+        this.shareAddresses = shareAddresses;
+    }
+
+    private Member readMember(ByteBuffer buffer) {
+        Address address = getAddress(buffer);
+        long ts = getVarint(buffer);
+        long hb = getVarint(buffer);
+        return new Member(address, ts, hb);
+    }
+
+    private void writeMember(ByteBuffer buffer, Member member) {
+        putAddress(buffer, member.address);
+        putVarint(buffer, member.timestamp);
+        putVarint(buffer, member.heartbeat);
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer, int version) {
+        int typeIdx = getVarintInt(buffer);
+        if (typeIdx >= TYPES.length) {
+            throw new IllegalStateException("Invalid message type");
+        }
+        Message.Type type = TYPES[typeIdx];
+
+        Member sender = readMember(buffer);
+
+        if (type == Message.Type.MEMBER_LIST) {
+            boolean shared = (buffer.get() & SHARED_ADDRESSES) != 0;
+            int n = getVarintInt(buffer);
+            List<Member> members = new ArrayList<>(n);
+            int ip = (int) (sender.address.id() >>> 16);
+            for (int i=0; i<n; i++) {
+                Address address;
+                if (shared) {
+                    int header = getVarintInt(buffer);
+                    if ((header & 1) == 0) {
+                        ip = buffer.getInt();
+                    }
+                    address = RemoteAddress.of(ip, header >>> 1);
+                } else {
+                    address = getAddress(buffer);
+                }
+                long ts = sender.timestamp + getZigzag(buffer);
+                long hb = sender.heartbeat + getZigzag(buffer);
+                members.add(new Member(address, ts, hb));
+            }
+            return new Message(type, sender, members);
+        } else {
+            return new Message(type, sender, Collections.emptyList());
+        }
+    }
+
+    /**
+     * Members of MEMBER_LIST are encoded against the sender: timestamp and heartbeat as zigzag varint deltas
+     * from sender's own. With shared addresses, IP is only written when it differs from the previous member's
+     * (the first member is compared to the sender), followed by [port << 1 | same IP flag] varint.
+     */
+    @Override
+    public void encode(Message message, ByteBuffer buffer) {
+        putVarint(buffer, message.type.ordinal());
+        writeMember(buffer, message.sender);
+        if (message.type == Message.Type.MEMBER_LIST) {
+            final Member sender = message.sender;
+            buffer.put(shareAddresses ? SHARED_ADDRESSES : 0);
+            int n = message.members.size();
+            putVarint(buffer, n);
+            int prev = (int) (sender.address.id() >>> 16);
+            for (int i=0; i<n; i++) {
+                Member member = message.members.get(i);
+                if (shareAddresses) {
+                    long id = member.address.id();
+                    int ip = (int) (id >>> 16);
+                    boolean same = (ip == prev);
+                    putVarint(buffer, ((id & 0xFFFF) << 1) | (same ? 1 : 0));
+                    if (!same) {
+                        buffer.putInt(ip);
+                        prev = ip;
+                    }
+                } else {
+                    putAddress(buffer, member.address);
+                }
+                putZigzag(buffer, member.timestamp - sender.timestamp);
+                putZigzag(buffer, member.heartbeat - sender.heartbeat);
+            }
+        }
+    }
+}
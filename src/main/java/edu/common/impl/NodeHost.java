@@ -0,0 +1,167 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.Network;
+import edu.common.api.Payload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts many nodes in one process on a fixed set of threads: a work-stealing pool runs the nodes, each node
+ * through its own serial executor so that its handle and cycle calls never overlap, and a single timer thread
+ * triggers node cycles. Nodes share one network, which routes payloads to their listeners by address.
+ * Threads used do not depend on the number of nodes hosted.
+ */
+public class NodeHost implements AutoCloseable {
+    private static final int MAX_BATCH = 64;
+
+    private final Network network;
+    private final long cycleMillis;
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService timer;
+    private final ConcurrentHashMap<Address, Hosted> nodes = new ConcurrentHashMap<>();
+
+    public NodeHost(Network network, long cycleMillis) {
+        this(network, cycleMillis, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param network network shared by all hosted nodes
+     * @param cycleMillis period of node cycles
+     * @param parallelism number of threads running the nodes
+     */
+    public NodeHost(Network network, long cycleMillis, int parallelism) {
+        if (cycleMillis <= 0) {
+            throw new IllegalArgumentException("Cycle period must be positive: " + cycleMillis);
+        }
+        this.network = network;
+        this.cycleMillis = cycleMillis;
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        // not a daemon: hosted nodes keep the process alive until the host is closed
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> new Thread(runnable, "node-host-timer"));
+        timer.setRemoveOnCancelPolicy(true);
+        this.timer = timer;
+    }
+
+    /**
+     * Start listening to the node's address and driving the node.
+     * @return the node
+     */
+    public <N extends Network.Node> N add(N node) {
+        Hosted hosted = new Hosted(node, network.listen(node.address()), new SerialExecutor(pool));
+        if (nodes.putIfAbsent(node.address(), hosted) != null) {
+            close(hosted.listener);
+            throw new IllegalStateException("Node already hosted at " + node.address());
+        }
+        hosted.start();
+        return node;
+    }
+
+    /**
+     * Stop driving the node at the address and stop listening to it.
+     */
+    public void remove(Address address) {
+        Hosted hosted = nodes.remove(address);
+        if (hosted != null) {
+            hosted.stop();
+        }
+    }
+
+    /**
+     * Run the task on the executor of the node at the address, serialized with the node's handle and cycle calls.
+     */
+    public void execute(Address address, Runnable task) {
+        Hosted hosted = nodes.get(address);
+        if (hosted == null) {
+            throw new IllegalStateException("No node hosted at " + address);
+        }
+        hosted.executor.execute(task);
+    }
+
+    public List<Network.Node> nodes() {
+        List<Network.Node> result = new ArrayList<>(nodes.size());
+        for (Hosted hosted : nodes.values()) {
+            result.add(hosted.node);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        for (Address address : new ArrayList<>(nodes.keySet())) {
+            remove(address);
+        }
+        timer.shutdownNow();
+        pool.shutdown();
+    }
+
+    private static void close(Network.Listener listener) {
+        try {
+            listener.close();
+        } catch (Exception e) {
+            /* ignore */
+        }
+    }
+
+    private class Hosted {
+        private final Network.Node node;
+        private final Network.Listener listener;
+        private final SerialExecutor executor;
+        private volatile boolean isRunning = true;
+        private volatile ScheduledFuture<?> cycle;
+
+        Hosted(Network.Node node, Network.Listener listener, SerialExecutor executor) {
+            this.node = node;
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void start() {
+            cycle = timer.scheduleAtFixedRate(() -> executor.execute(this::cycle), cycleMillis, cycleMillis, TimeUnit.MILLISECONDS);
+            await();
+        }
+
+        void stop() {
+            isRunning = false;
+            if (cycle != null) {
+                cycle.cancel(false);
+            }
+            close(listener);
+        }
+
+        /**
+         * Wait for the next payload without holding a thread: the payload completing the future is handled
+         * on the node's executor, together with whatever else is queued by then.
+         */
+        private void await() {
+            if (isRunning) {
+                listener.next().thenAccept(payload -> executor.execute(() -> handle(payload)));
+            }
+        }
+
+        private void handle(Payload payload) {
+            for (int i = 0; payload != null && isRunning; i++) {
+                try {
+                    node.handle(payload);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                payload = (i < MAX_BATCH) ? listener.queue().poll() : null;
+            }
+            await();
+        }
+
+        private void cycle() {
+            if (isRunning) {
+                node.cycle();
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package edu.common.impl;
 import edu.common.api.Address;
 import edu.common.api.Network;
 import edu.common.api.Payload;
+import edu.kvstore.api.Batch;
 import edu.kvstore.api.KVNode;
 import edu.kvstore.api.Ring;
 import edu.kvstore.impl.HashRing;
@@ -12,6 +13,7 @@ import edu.membership.impl.GossipMembership;
 import edu.membership.impl.GossipNode;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
 public class NodeImpl implements Network.Node {
@@ -19,18 +21,57 @@ public class NodeImpl implements Network.Node {
     private final MemberNode memberNode;
     private final KVNode keyvalNode;
     private final Ring<String> ring;
+    private final SerialExecutor memberLane;
+    private final SerialExecutor keyvalLane;
 
     public NodeImpl(Address address, Network network, Supplier<Long> clock, long timeFailedMillis, long timeCleanupMillis, long timeoutMillis, int replicationFactor) {
+        this(address, network, clock, timeFailedMillis, timeCleanupMillis, timeoutMillis, replicationFactor, null, null);
+    }
+
+    /**
+     * Node processing membership and key-value payloads in separate lanes, so that a burst of key-value work
+     * does not delay heartbeats: each lane is a mailbox drained in order on its own executor. Without executors,
+     * payloads are processed by the thread calling handle.
+     * @param memberExecutor executor for membership payloads and cycles, preferably not shared with key-value work
+     * @param keyvalExecutor executor for key-value payloads
+     */
+    public NodeImpl(Address address, Network network, Supplier<Long> clock, long timeFailedMillis, long timeCleanupMillis, long timeoutMillis, int replicationFactor,
+                    Executor memberExecutor, Executor keyvalExecutor) {
         this.ring = new HashRing(Byte.MAX_VALUE, new GossipMembership(address, timeFailedMillis, timeCleanupMillis));
         this.memberNode = new GossipNode(address, network, ring, clock);
         this.keyvalNode = new KVNodeImpl(address, network, ring, clock, timeoutMillis, replicationFactor);
         this.address = address;
+        this.memberLane = (memberExecutor != null) ? new SerialExecutor(memberExecutor) : null;
+        this.keyvalLane = (keyvalExecutor != null) ? new SerialExecutor(keyvalExecutor) : null;
     }
 
     @Override
     public void handle(Payload payload) {
-        if (payload.keyval != null) keyvalNode.handle(payload.keyval);
-        else if (payload.member != null) memberNode.handle(payload.member);
+        if (payload.keyval != null) {
+            if (keyvalLane != null) keyvalLane.execute(() -> keyvalNode.handle(payload.keyval));
+            else keyvalNode.handle(payload.keyval);
+        } else if (payload.message instanceof Batch) {
+            Batch batch = (Batch) payload.message;
+            if (keyvalLane != null) keyvalLane.execute(() -> keyvalNode.handle(batch));
+            else keyvalNode.handle(batch);
+        } else if (payload.member != null) {
+            if (memberLane != null) memberLane.execute(() -> memberNode.handle(payload.member));
+            else memberNode.handle(payload.member);
+        }
+    }
+
+    /**
+     * @return lane processing membership payloads, with its queue depth and wait time metrics; null without lanes
+     */
+    public SerialExecutor memberLane() {
+        return memberLane;
+    }
+
+    /**
+     * @return lane processing key-value payloads, with its queue depth and wait time metrics; null without lanes
+     */
+    public SerialExecutor keyvalLane() {
+        return keyvalLane;
     }
 
     @Override
@@ -60,6 +101,9 @@ public class NodeImpl implements Network.Node {
 
     @Override
     public void cycle() {
-        memberNode.cycle();
+        if (memberLane != null) memberLane.execute(memberNode::cycle);
+        else memberNode.cycle();
+        if (keyvalLane != null) keyvalLane.execute(keyvalNode::cycle);
+        else keyvalNode.cycle();
     }
 }
@@ -0,0 +1,83 @@
+package edu.common.impl;
+
+import edu.common.api.Network;
+import edu.common.api.Payload;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a node on a single thread: payloads are handed to the node as soon as the listener receives them,
+ * and the node's cycle runs on its own period between them. Handling and cycling never run concurrently,
+ * so the node needs no additional locking.
+ */
+public class NodeRuntime implements AutoCloseable {
+    private final Network.Node node;
+    private final Network.Listener listener;
+    private final long cycleNanos;
+    private final Thread thread;
+    private volatile boolean isRunning = true;
+
+    /**
+     * @param node node to drive
+     * @param listener listener receiving payloads for the node
+     * @param cycleMillis period of node cycles
+     */
+    public NodeRuntime(Network.Node node, Network.Listener listener, long cycleMillis) {
+        if (cycleMillis <= 0) {
+            throw new IllegalArgumentException("Cycle period must be positive: " + cycleMillis);
+        }
+        this.node = node;
+        this.listener = listener;
+        this.cycleNanos = TimeUnit.MILLISECONDS.toNanos(cycleMillis);
+        // not a daemon: a running node keeps the process alive until the runtime is closed
+        this.thread = new Thread(this::run, "node-" + node.address());
+    }
+
+    public NodeRuntime start() {
+        thread.start();
+        return this;
+    }
+
+    private void run() {
+        long nextCycle = System.nanoTime() + cycleNanos;
+        while (isRunning) {
+            try {
+                long wait = nextCycle - System.nanoTime();
+                if (wait <= 0L) {
+                    node.cycle();
+                    long now = System.nanoTime();
+                    nextCycle += cycleNanos;
+                    if (nextCycle <= now) {
+                        // skip missed cycles rather than running them back-to-back
+                        nextCycle = now + cycleNanos;
+                    }
+                    continue;
+                }
+                Payload payload = listener.poll(wait, TimeUnit.NANOSECONDS);
+                if (payload != null) {
+                    node.handle(payload);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stop driving the node and wait for the runtime thread to exit. The listener is left open.
+     */
+    @Override
+    public void close() {
+        isRunning = false;
+        thread.interrupt();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package edu.common.impl;
+
+import edu.common.api.Codec;
+import edu.common.api.Payload;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hands payloads from a receiver thread to a handler over a {@link RingBuffer}: the receiver copies encoded
+ * payloads into preallocated slots, a dedicated handler thread drains all published slots in one batch,
+ * decoding and handling each payload. Payloads arriving when the ring is full are dropped and counted.
+ * Only the handoff is free of allocation: slots hold encoded bytes, not decode targets, and decoding creates
+ * the immutable Payload and its message (copying the bytes of a key-value message) as it does for a listener.
+ */
+public class Pipeline implements AutoCloseable {
+    private static final long PARK_NANOS = 50_000L;
+    private static final int YIELD_TRIES = 100;
+
+    public enum WaitStrategy {
+        /** Spin on the cursor: lowest latency, burns a core */
+        BUSY_SPIN,
+        /** Yield the core between checks of the cursor */
+        YIELD,
+        /** Park briefly between checks of the cursor: least CPU used, highest latency */
+        PARK
+    }
+
+    private final Codec codec;
+    private final RingBuffer ring;
+    private final WaitStrategy waitStrategy;
+    private final Consumer<Payload> handler;
+    private final Runnable onClose;
+    private final Thread thread;
+    private volatile boolean isRunning = true;
+
+    private volatile long published = 0L; // written by the producer only
+    private volatile long dropped = 0L; // written by the producer only
+    private volatile long handled = 0L; // written by the handler thread only
+    private volatile long batches = 0L; // written by the handler thread only
+
+    Pipeline(Codec codec, int ringSize, int slotSize, WaitStrategy waitStrategy, Consumer<Payload> handler, Runnable onClose) {
+        this.codec = codec;
+        this.ring = new RingBuffer(ringSize, slotSize);
+        this.waitStrategy = waitStrategy;
+        this.handler = handler;
+        this.onClose = onClose;
+        this.thread = new Thread(this::run, "pipeline-handler");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Copy the encoded payload into the next slot of the ring, called by the receiver thread only.
+     * @return `false` if the ring is full and the payload was dropped
+     */
+    boolean publish(ByteBuffer encoded) {
+        ByteBuffer slot = ring.claim(encoded.remaining());
+        if (slot == null) {
+            dropped += 1;
+            return false;
+        }
+        slot.put(encoded);
+        ring.publish();
+        published += 1;
+        return true;
+    }
+
+    private void run() {
+        long sequence = ring.released();
+        int idle = 0;
+        while (isRunning) {
+            long available = ring.cursor();
+            if (available <= sequence) {
+                idle(idle);
+                if (idle < YIELD_TRIES) idle++;
+                continue;
+            }
+            idle = 0;
+            for (long seq = sequence + 1; seq <= available; seq++) {
+                try {
+                    handler.accept(codec.decode(ring.slot(seq)));
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            handled += available - sequence;
+            batches += 1;
+            sequence = available;
+            ring.release(sequence);
+        }
+    }
+
+    private void idle(int counter) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            case PARK:
+            default:
+                // stay responsive to a burst that is already under way before going to sleep
+                if (counter < YIELD_TRIES) Thread.yield();
+                else LockSupport.parkNanos(PARK_NANOS);
+                break;
+        }
+    }
+
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return number of payloads passed to the handler thread
+     */
+    public long published() {
+        return published;
+    }
+
+    /**
+     * @return number of payloads dropped because the ring was full
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return number of payloads decoded and handled
+     */
+    public long handled() {
+        return handled;
+    }
+
+    /**
+     * @return average number of payloads handled per drain of the ring
+     */
+    public double averageBatchSize() {
+        long n = batches;
+        return (n == 0L) ? 0.0 : (double) handled / n;
+    }
+
+    /**
+     * Stop receiving and stop the handler thread; payloads not handled yet are discarded.
+     */
+    @Override
+    public void close() {
+        onClose.run();
+        isRunning = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Pipeline{" +
+                "capacity=" + capacity() +
+                ", waitStrategy=" + waitStrategy +
+                ", published=" + published +
+                ", dropped=" + dropped +
+                ", handled=" + handled +
+                ", avgBatchSize=" + averageBatchSize() +
+                '}';
+    }
+}
@@ -0,0 +1,160 @@
+package edu.common.impl;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects fragments of datagrams split by the sender until every fragment of a message has arrived.
+ * Incomplete messages are dropped when they get older than the timeout, or (oldest first) when
+ * the memory held by all incomplete messages would exceed the limit. Memory held by a message counts
+ * its fragment table as well as the bytes received, and messages of more fragments than a payload
+ * needs are rejected. Not thread-safe.
+ */
+class Reassembler {
+    static final int REFERENCE_BYTES = 8; // per entry of a message's fragment table
+
+    private final int maxBytes;
+    private final int maxCount;
+    private final long timeoutNanos;
+
+    private final LinkedHashMap<Key, Partial> partials = new LinkedHashMap<>();
+    private int bytes = 0;
+
+    /**
+     * @param maxBytes limit of memory held by incomplete messages
+     * @param maxCount maximum number of fragments of a message
+     * @param timeoutNanos time to wait for the rest of a message's fragments
+     */
+    Reassembler(int maxBytes, int maxCount, long timeoutNanos) {
+        this.maxBytes = maxBytes;
+        this.maxCount = maxCount;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * Add fragment of a message.
+     * @param sender address the fragment was received from
+     * @param id message id, unique per sender
+     * @param index index of the fragment within the message
+     * @param count total number of fragments of the message
+     * @param chunk fragment bytes, from current position to limit
+     * @param now current time in nanoseconds
+     * @return complete message bytes once the last missing fragment is added, null otherwise
+     */
+    ByteBuffer add(SocketAddress sender, int id, int index, int count, ByteBuffer chunk, long now) {
+        if (count <= 0 || count > maxCount || index < 0 || index >= count || chunk.remaining() > maxBytes) {
+            throw new IllegalStateException("Invalid fragment " + index + "/" + count);
+        }
+
+        Key key = new Key(sender, id);
+        Partial partial = partials.get(key);
+        if (partial == null) {
+            partial = new Partial(count, now);
+            partials.put(key, partial);
+            bytes += partial.bytes;
+        } else if (partial.chunks.length != count) {
+            throw new IllegalStateException("Fragment count mismatch: " + count + " != " + partial.chunks.length);
+        }
+
+        if (partial.chunks[index] != null) {
+            return null; // duplicate
+        }
+
+        byte data[] = new byte[chunk.remaining()];
+        chunk.get(data);
+        partial.chunks[index] = data;
+        partial.received += 1;
+        partial.length += data.length;
+        partial.bytes += data.length;
+        bytes += data.length;
+
+        if (partial.received == count) {
+            partials.remove(key);
+            bytes -= partial.bytes;
+            ByteBuffer whole = ByteBuffer.allocate(partial.length);
+            for (byte c[] : partial.chunks) {
+                whole.put(c);
+            }
+            whole.flip();
+            return whole;
+        }
+
+        evict();
+        return null;
+    }
+
+    /**
+     * Drop incomplete messages whose first fragment arrived more than timeout ago.
+     * @param now current time in nanoseconds
+     */
+    void expire(long now) {
+        Iterator<Partial> it = partials.values().iterator();
+        while (it.hasNext()) {
+            Partial partial = it.next();
+            if (now - partial.createdAt < timeoutNanos) {
+                break; // insertion-ordered, the rest is younger
+            }
+            bytes -= partial.bytes;
+            it.remove();
+        }
+    }
+
+    private void evict() {
+        Iterator<Partial> it = partials.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes;
+            it.remove();
+        }
+    }
+
+    int pending() {
+        return partials.size();
+    }
+
+    int bytes() {
+        return bytes;
+    }
+
+    private static class Partial {
+        final byte chunks[][];
+        final long createdAt;
+        int received = 0;
+        int length = 0; // of fragments received
+        int bytes; // held, including the fragment table
+
+        Partial(int count, long createdAt) {
+            this.chunks = new byte[count][];
+            this.createdAt = createdAt;
+            this.bytes = count * REFERENCE_BYTES;
+        }
+    }
+
+    private static class Key {
+        final SocketAddress sender;
+        final int id;
+
+        Key(SocketAddress sender, int id) {
+            this.sender = sender;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key that = (Key) o;
+
+            return (id == that.id) && sender.equals(that.sender);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sender.hashCode() + id;
+        }
+    }
+
+}
@@ -5,26 +5,74 @@ import edu.common.api.Address;
 import java.util.Arrays;
 
 public class RemoteAddress implements Address {
-    private byte addr[];
+    private static final int CACHE_SIZE = 1024; // power of two
+
+    /**
+     * Recently decoded addresses, so that decoding a member list does not allocate an address per member.
+     * Races are benign: the address is immutable, a lost update only costs an allocation.
+     */
+    private static final RemoteAddress cache[] = new RemoteAddress[CACHE_SIZE];
+
+    private final int ip;
     private final int port;
+    private final long id;
+    private final int hash;
+    private final String host;
 
     RemoteAddress(byte addr[], int port) {
-        this.addr = addr;
+        this(((addr[0] & 0xFF) << 24) | ((addr[1] & 0xFF) << 16) | ((addr[2] & 0xFF) << 8) | (addr[3] & 0xFF), port);
+    }
+
+    RemoteAddress(int ip, int port) {
+        this.ip = ip;
         this.port = port;
+        this.id = ((ip & 0xFFFFFFFFL) << 16) | (port & 0xFFFF);
+        this.hash = 31 * Arrays.hashCode(bytes()) + port;
+        this.host = (ip >>> 24) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
     }
 
     public RemoteAddress(String ip, int port) {
-        this.port = port;
-        this.addr = new byte[4];
+        this(parse(ip), port);
+    }
+
+    private static int parse(String ip) {
         String b[] = ip.split("\\.");
+        int addr = 0;
         for (int i=0; i<4; i++) {
-            addr[i] = Byte.valueOf(b[i]);
+            addr = (addr << 8) | (Integer.parseInt(b[i]) & 0xFF);
         }
+        return addr;
+    }
+
+    /**
+     * Get the address for packed IPv4 address and port, reusing a recently seen instance when possible.
+     */
+    static RemoteAddress of(int ip, int port) {
+        long id = ((ip & 0xFFFFFFFFL) << 16) | (port & 0xFFFF);
+        int idx = (int) (id ^ (id >>> 21)) & (CACHE_SIZE - 1);
+        RemoteAddress cached = cache[idx];
+        if (cached != null && cached.id == id) {
+            return cached;
+        }
+        RemoteAddress address = new RemoteAddress(ip, port);
+        cache[idx] = address;
+        return address;
+    }
+
+    /**
+     * @return IPv4 address packed into an int, most significant byte first
+     */
+    public int ip() {
+        return ip;
+    }
+
+    public byte[] bytes() {
+        return new byte[] { (byte) (ip >>> 24), (byte) (ip >>> 16), (byte) (ip >>> 8), (byte) ip };
     }
 
     @Override
     public String host() {
-        return "" + addr[0] + "." + addr[1] + "." + addr[2] + "." + addr[3];
+        return host;
     }
 
     @Override
@@ -32,6 +80,11 @@ public class RemoteAddress implements Address {
         return port;
     }
 
+    @Override
+    public long id() {
+        return id;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -39,20 +92,18 @@ public class RemoteAddress implements Address {
 
         RemoteAddress that = (RemoteAddress) o;
 
-        return (port == that.port) && Arrays.equals(addr, that.addr);
+        return (port == that.port) && (ip == that.ip);
     }
 
     @Override
     public int hashCode() {
-        int result = Arrays.hashCode(addr);
-        result = 31 * result + port;
-        return result;
+        return hash;
     }
 
     @Override
     public String toString() {
         return "RemoteAddress{" +
-                "addr=" + Arrays.toString(addr) +
+                "addr=" + Arrays.toString(bytes()) +
                 ", port=" + port +
                 '}';
     }
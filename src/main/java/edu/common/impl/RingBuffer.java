@@ -0,0 +1,100 @@
+package edu.common.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer single-consumer ring of reusable byte buffers. The producer claims the next slot,
+ * fills it and publishes it; the consumer reads every slot up to the published cursor in one batch and then
+ * releases them to the producer. Slots are allocated once (and grown when a larger message arrives), so passing
+ * the bytes of a message through the ring allocates nothing.
+ */
+class RingBuffer {
+    private final ByteBuffer slots[];
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(-1L); // last published sequence
+    private final AtomicLong gate = new AtomicLong(-1L); // last released sequence
+
+    private long next = 0L; // owned by the producer
+    private long cachedGate = -1L; // owned by the producer
+
+    /**
+     * @param capacity number of slots, a power of two
+     * @param slotSize initial size of a slot
+     */
+    RingBuffer(int capacity, int slotSize) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new ByteBuffer[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = ByteBuffer.allocate(slotSize);
+        }
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Claim the next slot for writing, called by the producer only.
+     * @param size number of bytes to be written
+     * @return cleared slot with at least `size` bytes of room, or null if the ring is full
+     */
+    ByteBuffer claim(int size) {
+        long wrap = next - slots.length;
+        if (wrap > cachedGate) {
+            cachedGate = gate.get();
+            if (wrap > cachedGate) {
+                return null;
+            }
+        }
+        int index = (int) next & mask;
+        ByteBuffer slot = slots[index];
+        if (slot.capacity() < size) {
+            slot = ByteBuffer.allocate(size);
+            slots[index] = slot;
+        }
+        slot.clear();
+        return slot;
+    }
+
+    /**
+     * Make the claimed slot visible to the consumer, called by the producer only.
+     */
+    void publish() {
+        ByteBuffer slot = slots[(int) next & mask];
+        slot.flip();
+        cursor.lazySet(next);
+        next += 1;
+    }
+
+    /**
+     * @return last published sequence
+     */
+    long cursor() {
+        return cursor.get();
+    }
+
+    /**
+     * @return last sequence released by the consumer
+     */
+    long released() {
+        return gate.get();
+    }
+
+    /**
+     * @return published slot at the sequence, valid until the sequence is released
+     */
+    ByteBuffer slot(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Give slots up to the sequence back to the producer, called by the consumer only.
+     */
+    void release(long sequence) {
+        gate.lazySet(sequence);
+    }
+}
@@ -0,0 +1,126 @@
+package edu.common.impl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs submitted tasks one at a time, in submission order, on a shared executor. At most one drain of the task
+ * queue is scheduled at any time; a drain gives the thread back after a batch of tasks so that one busy
+ * executor cannot starve the others sharing the pool. Tracks queue depth and how long tasks wait to run.
+ */
+public class SerialExecutor implements Executor {
+    private static final int MAX_BATCH = 64;
+
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Task> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(new Task(task, System.nanoTime()));
+        maxDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+        schedule();
+    }
+
+    private void schedule() {
+        if (isScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            Task task;
+            for (int i = 0; i < MAX_BATCH && (task = tasks.poll()) != null; i++) {
+                depth.decrementAndGet();
+                long wait = System.nanoTime() - task.nanos;
+                waitNanos.add(wait);
+                maxWaitNanos.accumulateAndGet(wait, Math::max);
+                try {
+                    task.runnable.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                executed.increment();
+            }
+        } finally {
+            isScheduled.set(false);
+            // a task may have been submitted after the last poll, but before the flag was cleared
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * @return number of tasks waiting to run
+     */
+    public int depth() {
+        return depth.get();
+    }
+
+    /**
+     * @return largest number of tasks that were waiting to run at once
+     */
+    public int maxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * @return number of tasks run
+     */
+    public long executed() {
+        return executed.sum();
+    }
+
+    /**
+     * @return average time tasks waited between submission and start, in microseconds
+     */
+    public double averageWaitMicros() {
+        long n = executed.sum();
+        return (n == 0L) ? 0.0 : (double) TimeUnit.NANOSECONDS.toMicros(waitNanos.sum()) / n;
+    }
+
+    /**
+     * @return longest time a task waited between submission and start, in microseconds
+     */
+    public long maxWaitMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "SerialExecutor{" +
+                "depth=" + depth() +
+                ", maxDepth=" + maxDepth() +
+                ", executed=" + executed() +
+                ", avgWaitMicros=" + averageWaitMicros() +
+                ", maxWaitMicros=" + maxWaitMicros() +
+                '}';
+    }
+
+    private static class Task {
+        final Runnable runnable;
+        final long nanos;
+
+        Task(Runnable runnable, long nanos) {
+            this.runnable = runnable;
+            this.nanos = nanos;
+        }
+    }
+}
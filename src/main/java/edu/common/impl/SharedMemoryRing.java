@@ -0,0 +1,303 @@
+package edu.common.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Multi-producer single-consumer ring of length-prefixed frames in a memory-mapped file, shared between processes.
+ * Layout: [write position (long)] [read position (long)] [capacity (int)] [state (int)] [heartbeat (long)] ...
+ * [data (capacity)]. Positions only grow, a frame is [length (int)] [bytes] padded to 4 bytes, so that lengths
+ * never wrap around the end of data. Producers append under a lock on the header (a file lock between processes,
+ * a monitor per file between threads); the consumer reads frames up to the write position, then moves the read
+ * position. Positions and state are stored after a fence and loaded before one: a frame is written before the
+ * write position that publishes it and read after it, and its space is handed back only after it was read. The consumer stamps the heartbeat as it polls, producers stop writing to a ring whose
+ * heartbeat is older than {@link #STALE_MILLIS}: its listener is gone without closing it.
+ */
+class SharedMemoryRing implements AutoCloseable {
+    private static final int WRITE_POSITION = 0;
+    private static final int READ_POSITION = 8;
+    private static final int CAPACITY = 16;
+    private static final int STATE = 20;
+    private static final int HEARTBEAT = 24;
+    private static final int HEADER_SIZE = 64;
+    private static final int LENGTH_SIZE = 4;
+
+    private static final int OPEN = 1;
+    private static final int CLOSED = 0;
+
+    /**
+     * Time without a heartbeat after which a ring is considered abandoned by its listener.
+     */
+    static final long STALE_MILLIS = 1000;
+
+    // file locks are held by the process, threads writing to the same file must be excluded in the process
+    private static final ConcurrentHashMap<Path, Monitor> monitors = new ConcurrentHashMap<>();
+
+    private static volatile int fence = 0;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final Path key;
+    private final Monitor monitor;
+    private final AtomicBoolean isClosed = new AtomicBoolean(false);
+    private ByteBuffer scratch = ByteBuffer.allocate(0); // owned by the consumer
+    private long heartbeat = 0L; // owned by the consumer
+
+    private SharedMemoryRing(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.key = path.toAbsolutePath();
+        this.monitor = monitors.compute(key, (p, m) -> {
+            Monitor monitor = (m != null) ? m : new Monitor();
+            monitor.users += 1;
+            return monitor;
+        });
+    }
+
+    /**
+     * Create the ring read by a listener, replacing a ring left behind at the path.
+     * @param capacity size of data, a multiple of 4
+     */
+    static SharedMemoryRing create(Path path, int capacity) throws IOException {
+        if (capacity <= 0 || capacity % LENGTH_SIZE != 0) {
+            throw new IllegalArgumentException("Capacity must be a positive multiple of 4: " + capacity);
+        }
+        Files.createDirectories(path.getParent());
+        // a new file, not the old one truncated: producers still writing to a ring left behind see it go stale
+        Files.deleteIfExists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+            buffer.order(ByteOrder.nativeOrder()); // shared by processes of the same host only
+            buffer.putLong(WRITE_POSITION, 0L);
+            buffer.putLong(READ_POSITION, 0L);
+            buffer.putInt(CAPACITY, capacity);
+            buffer.putLong(HEARTBEAT, System.currentTimeMillis());
+            fence();
+            buffer.putInt(STATE, OPEN);
+            return new SharedMemoryRing(path, channel, buffer, capacity);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the ring of a listener for writing.
+     * @param now current time in milliseconds, as of System.currentTimeMillis
+     * @return the ring, or null if there is no live ring at the path
+     */
+    static SharedMemoryRing open(Path path, long now) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                channel.close();
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+            int capacity = buffer.getInt(CAPACITY);
+            if (capacity <= 0 || HEADER_SIZE + (long) capacity > channel.size()) {
+                channel.close();
+                return null;
+            }
+            SharedMemoryRing ring = new SharedMemoryRing(path, channel, buffer, capacity);
+            if (!ring.isLive(now)) {
+                ring.close();
+                return null;
+            }
+            return ring;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param now current time in milliseconds, as of System.currentTimeMillis
+     * @return `true` if the ring is open and its listener polled it recently
+     */
+    boolean isLive(long now) {
+        boolean isOpen = buffer.getInt(STATE) == OPEN;
+        long polledAt = buffer.getLong(HEARTBEAT);
+        fence();
+        return isOpen && now - polledAt < STALE_MILLIS;
+    }
+
+    /**
+     * Keep buffer accesses before the call from being reordered with the ones after it, also as seen by other
+     * processes. Java 8 has no fences in its API: a volatile store followed by a volatile load is compiled
+     * to a full fence.
+     */
+    private static void fence() {
+        fence = 0;
+        int ignored = fence;
+    }
+
+    private static int align(int n) {
+        return (n + LENGTH_SIZE - 1) & ~(LENGTH_SIZE - 1);
+    }
+
+    private int offset(long position) {
+        return HEADER_SIZE + (int) (position % capacity);
+    }
+
+    /**
+     * Append the frame, called by producers.
+     * @param now current time in milliseconds, as of System.currentTimeMillis
+     * @return `false` if the ring is not live or has no room for the frame
+     */
+    boolean write(ByteBuffer frame, long now) throws IOException {
+        final int length = frame.remaining();
+        final int size = LENGTH_SIZE + align(length);
+        if (size > capacity) {
+            return false;
+        }
+        synchronized (monitor) {
+            final FileLock lock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                if (!isLive(now)) {
+                    return false;
+                }
+                long write = buffer.getLong(WRITE_POSITION);
+                long read = buffer.getLong(READ_POSITION);
+                fence();
+                if (capacity - (write - read) < size) {
+                    return false;
+                }
+                buffer.putInt(offset(write), length);
+                copy(frame, offset(write + LENGTH_SIZE), length);
+                fence();
+                buffer.putLong(WRITE_POSITION, write + size);
+                return true;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private void copy(ByteBuffer frame, int offset, int length) {
+        ByteBuffer target = buffer.duplicate();
+        int first = Math.min(length, HEADER_SIZE + capacity - offset);
+        target.position(offset);
+        ByteBuffer head = frame.duplicate();
+        head.limit(head.position() + first);
+        target.put(head);
+        if (first < length) {
+            target.position(HEADER_SIZE);
+            ByteBuffer tail = frame.duplicate();
+            tail.position(tail.position() + first);
+            target.put(tail);
+        }
+        frame.position(frame.limit());
+    }
+
+    /**
+     * Hand frames written so far to the consumer, called by the single consumer. A frame is only valid
+     * during the call. Also stamps the heartbeat that tells producers the ring is polled.
+     * @param now current time in milliseconds, as of System.currentTimeMillis
+     * @return number of frames read
+     */
+    int read(Consumer<ByteBuffer> consumer, long now) {
+        if (now != heartbeat) {
+            heartbeat = now;
+            buffer.putLong(HEARTBEAT, now);
+        }
+        long read = buffer.getLong(READ_POSITION); // written by this consumer only
+        final long write = buffer.getLong(WRITE_POSITION);
+        fence();
+        int count = 0;
+        while (read < write) {
+            int length = buffer.getInt(offset(read));
+            int offset = offset(read + LENGTH_SIZE);
+            ByteBuffer frame;
+            if (offset + length <= HEADER_SIZE + capacity) {
+                frame = buffer.duplicate();
+                frame.position(offset);
+                frame.limit(offset + length);
+            } else {
+                frame = wrapped(offset, length);
+            }
+            try {
+                consumer.accept(frame);
+            } catch (RuntimeException e) {
+                /* ignore malformed frame */
+            }
+            read += LENGTH_SIZE + align(length);
+            count += 1;
+        }
+        if (count > 0) {
+            fence();
+            buffer.putLong(READ_POSITION, read);
+        }
+        return count;
+    }
+
+    private ByteBuffer wrapped(int offset, int length) {
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(length);
+        }
+        scratch.clear();
+        ByteBuffer source = buffer.duplicate();
+        int first = HEADER_SIZE + capacity - offset;
+        source.position(offset);
+        source.limit(offset + first);
+        scratch.put(source);
+        source.clear();
+        source.position(HEADER_SIZE);
+        source.limit(HEADER_SIZE + length - first);
+        scratch.put(source);
+        scratch.flip();
+        return scratch;
+    }
+
+    /**
+     * Mark the ring closed for producers and remove the file, called by the listener.
+     */
+    void delete() {
+        synchronized (monitor) {
+            fence();
+            buffer.putInt(STATE, CLOSED);
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            /* ignore */
+        }
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (!isClosed.compareAndSet(false, true)) {
+            return;
+        }
+        monitors.computeIfPresent(key, (p, m) -> (--m.users == 0) ? null : m);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            /* ignore */
+        }
+    }
+
+    private static class Monitor {
+        int users = 0; // rings of the file open in this process, changed under the map's compute
+    }
+}
@@ -0,0 +1,262 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.Codec;
+import edu.common.api.Network;
+import edu.common.api.Payload;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Transport for processes on the same host: every listener reads payloads from a {@link SharedMemoryRing}
+ * named after its port in a shared directory (under /dev/shm where available), senders on the host write
+ * encoded payloads straight into it. Targets that are not on the loopback address, or have no live ring to write to
+ * (closed, or not polled for a while), are reached over the fallback UDP network, which listeners also listen to.
+ */
+public class ShmNetwork implements Network, AutoCloseable {
+    public static final Path DEFAULT_DIRECTORY = Paths.get(
+            Files.isDirectory(Paths.get("/dev/shm")) ? "/dev/shm" : System.getProperty("java.io.tmpdir"),
+            "distributed-algorithms");
+    public static final int DEFAULT_RING_SIZE = 1024 * 1024;
+
+    private static final int ENCODE_BUFFER_SIZE = UdpNetwork.MAX_PAYLOAD_SIZE;
+    private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int YIELD_TRIES = 100;
+    private static final long MIN_PARK_NANOS = 50_000L;
+    // well within SharedMemoryRing.STALE_MILLIS, the receiver stamps the heartbeats of rings as it polls them
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path directory;
+    private final int ringSize;
+    private final Codec codec;
+    private final UdpNetwork fallback;
+    private final Supplier<ListenerQueue> queues;
+    private final ConcurrentHashMap<Address, SharedMemoryRing> rings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Address, Long> missing = new ConcurrentHashMap<>(); // next time to look for a ring
+    private final CopyOnWriteArrayList<Inbound> inbound = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ByteBuffer> encodeBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(ENCODE_BUFFER_SIZE));
+    private volatile boolean isRunning = true;
+    private Thread receiver;
+
+    public ShmNetwork() {
+        this(DEFAULT_DIRECTORY, DEFAULT_RING_SIZE, new BinaryCodec(), new UdpNetwork(), ListenerQueue::new);
+    }
+
+    /**
+     * @param directory directory of listener rings, shared by all processes on the host
+     * @param ringSize size of a listener's ring, in bytes
+     * @param codec wire encoding of payloads
+     * @param fallback network for targets that are not reachable through shared memory
+     * @param queues factory of bounded queues for listeners
+     */
+    public ShmNetwork(Path directory, int ringSize, Codec codec, UdpNetwork fallback, Supplier<ListenerQueue> queues) {
+        this.directory = directory;
+        this.ringSize = ringSize;
+        this.codec = codec;
+        this.fallback = fallback;
+        this.queues = queues;
+    }
+
+    private Path path(Address address) {
+        return directory.resolve(address.port() + ".ring");
+    }
+
+    private static boolean isLoopback(Address address) {
+        String host = address.host();
+        return host.startsWith("127.") || "localhost".equals(host);
+    }
+
+    /**
+     * @return ring of the target to write to, or null if it has none (checked again after a while)
+     */
+    private SharedMemoryRing ring(Address target) {
+        SharedMemoryRing ring = rings.get(target);
+        if (ring != null) {
+            return ring;
+        }
+        Long recheck = missing.get(target);
+        long now = System.nanoTime();
+        if (recheck != null && now - recheck < 0) {
+            return null;
+        }
+        try {
+            ring = SharedMemoryRing.open(path(target), System.currentTimeMillis());
+        } catch (IOException e) {
+            ring = null;
+        }
+        if (ring == null) {
+            missing.put(target, now + RECHECK_NANOS);
+            return null;
+        }
+        missing.remove(target);
+        SharedMemoryRing existing = rings.putIfAbsent(target, ring);
+        if (existing != null) {
+            ring.close();
+            return existing;
+        }
+        return ring;
+    }
+
+    private ByteBuffer encode(Payload payload) {
+        ByteBuffer buffer = encodeBuffer.get();
+        buffer.clear();
+        codec.encode(payload, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public boolean send(Address target, Payload payload) {
+        if (!isRunning) {
+            return false;
+        }
+        SharedMemoryRing ring = isLoopback(target) ? ring(target) : null;
+        if (ring == null) {
+            return fallback.send(target, payload);
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (ring.write(encode(payload), now)) {
+                return true;
+            }
+            if (ring.isLive(now)) {
+                return false; // ring is full, the payload is dropped
+            }
+        } catch (BufferOverflowException e) {
+            e.printStackTrace();
+            return false;
+        } catch (IOException e) {
+            /* fall through to forget the ring */
+        }
+        // listener is gone or no longer polls its ring (its process died), it may come back as a UDP-only
+        // or a new shared memory listener
+        rings.remove(target, ring);
+        ring.close();
+        return fallback.send(target, payload);
+    }
+
+    @Override
+    public Listener listen(final Address address) {
+        final ListenerQueue queue = queues.get();
+        // bind the port first: it fails if someone else listens to it, whose ring must not be replaced
+        final Listener remote = fallback.listen(address, queue);
+        final SharedMemoryRing ring;
+        try {
+            ring = SharedMemoryRing.create(path(address), ringSize);
+        } catch (IOException e) {
+            try {
+                remote.close();
+            } catch (Exception ex) {
+                /* ignore */
+            }
+            throw new IllegalStateException("Failed to listen to " + address, e);
+        }
+        final Inbound in = new Inbound(ring, queue);
+        inbound.add(in);
+        start();
+
+        return new Listener() {
+            @Override
+            public Queue<Payload> queue() {
+                return queue;
+            }
+
+            @Override
+            public Payload poll(long timeout, TimeUnit unit) throws InterruptedException {
+                return queue.poll(timeout, unit);
+            }
+
+            @Override
+            public CompletableFuture<Payload> next() {
+                return queue.next();
+            }
+
+            @Override
+            public void close() {
+                inbound.remove(in);
+                ring.delete();
+                try {
+                    remote.close();
+                } catch (Exception e) {
+                    /* ignore */
+                }
+            }
+        };
+    }
+
+    private synchronized void start() {
+        if (receiver == null) {
+            receiver = new Thread(this::run, "shm-receiver");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+    }
+
+    /**
+     * Poll all listener rings from a single thread. With nothing to read, it yields for a while, then parks
+     * for twice as long each time, up to MAX_PARK_NANOS, until something is read again.
+     */
+    private void run() {
+        int idle = 0;
+        long park = MIN_PARK_NANOS;
+        while (isRunning) {
+            int count = 0;
+            long now = System.currentTimeMillis();
+            for (Inbound in : inbound) {
+                count += in.ring.read(in, now);
+            }
+            if (count > 0) {
+                idle = 0;
+                park = MIN_PARK_NANOS;
+            } else if (idle < YIELD_TRIES) {
+                idle += 1;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(park);
+                park = Math.min(park * 2, MAX_PARK_NANOS);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        isRunning = false;
+        for (Inbound in : inbound) {
+            in.ring.delete();
+        }
+        inbound.clear();
+        for (SharedMemoryRing ring : rings.values()) {
+            ring.close();
+        }
+        rings.clear();
+        fallback.close();
+    }
+
+    private class Inbound implements Consumer<ByteBuffer> {
+        final SharedMemoryRing ring;
+        final ListenerQueue queue;
+
+        Inbound(SharedMemoryRing ring, ListenerQueue queue) {
+            this.ring = ring;
+            this.queue = queue;
+        }
+
+        @Override
+        public void accept(ByteBuffer frame) {
+            queue.offer(codec.decode(frame));
+        }
+    }
+}
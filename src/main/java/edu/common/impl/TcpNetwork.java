@@ -0,0 +1,405 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.Codec;
+import edu.common.api.Network;
+import edu.common.api.Payload;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Stream transport: one persistent non-blocking connection per target, payloads framed as [length (int)] [payload].
+ * Senders only encode and enqueue frames; a single selector loop connects, accepts, reads, and writes all frames
+ * queued for a connection with one gathering write. Frames queued to a connection that fails are lost,
+ * just like datagrams are.
+ */
+public class TcpNetwork implements Network, AutoCloseable {
+    private static final int LENGTH_SIZE = 4;
+    private static final int ENCODE_BUFFER_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_GATHER = 64;
+
+    private final Codec codec;
+    private final Supplier<ListenerQueue> queues;
+    private final ConcurrentHashMap<Address, Outbound> connections = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isRunning = new AtomicBoolean(true);
+    private final ThreadLocal<ByteBuffer> encodeBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(ENCODE_BUFFER_SIZE));
+    private Selector selector;
+
+    public TcpNetwork() {
+        this(new BinaryCodec());
+    }
+
+    public TcpNetwork(Codec codec) {
+        this(codec, ListenerQueue::new);
+    }
+
+    /**
+     * @param codec wire encoding of payloads
+     * @param queues factory of bounded queues for listeners
+     */
+    public TcpNetwork(Codec codec, Supplier<ListenerQueue> queues) {
+        this.codec = codec;
+        this.queues = queues;
+    }
+
+    private synchronized Selector selector() throws IOException {
+        if (selector == null) {
+            selector = Selector.open();
+            Thread thread = new Thread(this::run, "tcp-network");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return selector;
+    }
+
+    private void submit(Runnable task) {
+        try {
+            Selector selector = selector();
+            tasks.offer(task);
+            selector.wakeup();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open selector", e);
+        }
+    }
+
+    private ByteBuffer frame(Payload payload) {
+        ByteBuffer buffer = encodeBuffer.get();
+        while (true) {
+            buffer.clear();
+            buffer.position(LENGTH_SIZE);
+            try {
+                codec.encode(payload, buffer);
+                break;
+            } catch (BufferOverflowException e) {
+                if (buffer.capacity() >= MAX_FRAME_SIZE) {
+                    throw e;
+                }
+                buffer = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, MAX_FRAME_SIZE));
+                encodeBuffer.set(buffer);
+            }
+        }
+        buffer.putInt(0, buffer.position() - LENGTH_SIZE);
+        buffer.flip();
+        ByteBuffer frame = ByteBuffer.allocate(buffer.remaining());
+        frame.put(buffer);
+        frame.flip();
+        return frame;
+    }
+
+    @Override
+    public boolean send(Address target, Payload payload) {
+        if (!isRunning.get()) {
+            return false;
+        }
+        final ByteBuffer frame;
+        try {
+            frame = frame(payload);
+        } catch (BufferOverflowException e) {
+            e.printStackTrace();
+            return false;
+        }
+        Outbound connection = connections.computeIfAbsent(target, Outbound::new);
+        connection.outbox.offer(frame);
+        if (connection.isIdle.compareAndSet(true, false)) {
+            submit(connection::flush);
+        }
+        return true;
+    }
+
+    @Override
+    public Listener listen(final Address address) {
+        final ListenerQueue queue = queues.get();
+        final Set<SocketChannel> accepted = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        final ServerSocketChannel server;
+        try {
+            // bind before returning, so that nothing sent after listen() is refused
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(address.port()));
+            server.configureBlocking(false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to listen to " + address, e);
+        }
+
+        final Acceptor acceptor = new Acceptor(queue, accepted);
+        submit(() -> {
+            try {
+                server.register(selector, SelectionKey.OP_ACCEPT, acceptor);
+            } catch (ClosedChannelException e) {
+                /* listener closed before it was registered */
+            }
+        });
+
+        return new Listener() {
+            @Override
+            public Queue<Payload> queue() {
+                return queue;
+            }
+
+            @Override
+            public Payload poll(long timeout, TimeUnit unit) throws InterruptedException {
+                return queue.poll(timeout, unit);
+            }
+
+            @Override
+            public CompletableFuture<Payload> next() {
+                return queue.next();
+            }
+
+            @Override
+            public void close() {
+                closeQuietly(server);
+                for (SocketChannel channel : accepted) {
+                    closeQuietly(channel);
+                }
+                submit(() -> { /* wake up to deregister closed channels */ });
+            }
+        };
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            /* ignore */
+        }
+    }
+
+    private void run() {
+        try {
+            while (isRunning.get()) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Handler handler = (Handler) key.attachment();
+                    try {
+                        if (key.isValid()) {
+                            handler.handle(key);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        key.cancel();
+                        closeQuietly(key.channel());
+                        handler.closed();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                /* ignore */
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        isRunning.set(false);
+        synchronized (this) {
+            if (selector != null) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    private interface Handler {
+        void handle(SelectionKey key) throws IOException;
+
+        void closed();
+    }
+
+    private class Acceptor implements Handler {
+        private final Queue<Payload> queue;
+        private final Set<SocketChannel> accepted;
+
+        Acceptor(Queue<Payload> queue, Set<SocketChannel> accepted) {
+            this.queue = queue;
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void handle(SelectionKey key) throws IOException {
+            SocketChannel channel;
+            while ((channel = ((ServerSocketChannel) key.channel()).accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.register(selector, SelectionKey.OP_READ, new Inbound(channel, queue, accepted));
+                accepted.add(channel);
+            }
+        }
+
+        @Override
+        public void closed() {
+            /* listener closed */
+        }
+    }
+
+    private class Inbound implements Handler {
+        private final SocketChannel channel;
+        private final Queue<Payload> queue;
+        private final Set<SocketChannel> accepted;
+        private ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        Inbound(SocketChannel channel, Queue<Payload> queue, Set<SocketChannel> accepted) {
+            this.channel = channel;
+            this.queue = queue;
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void handle(SelectionKey key) throws IOException {
+            int n;
+            while ((n = channel.read(buffer)) > 0) {
+                buffer.flip();
+                decode();
+                buffer.compact();
+            }
+            if (n < 0) {
+                throw new ClosedChannelException();
+            }
+        }
+
+        private void decode() {
+            while (buffer.remaining() >= LENGTH_SIZE) {
+                int length = buffer.getInt(buffer.position());
+                if (length < 0 || length > MAX_FRAME_SIZE) {
+                    throw new IllegalStateException("Invalid frame length: " + length);
+                }
+                if (buffer.remaining() < LENGTH_SIZE + length) {
+                    if (buffer.capacity() < LENGTH_SIZE + length) {
+                        ByteBuffer larger = ByteBuffer.allocate(LENGTH_SIZE + length);
+                        larger.put(buffer);
+                        larger.flip();
+                        buffer = larger;
+                    }
+                    return;
+                }
+                int end = buffer.position() + LENGTH_SIZE + length;
+                final int limit = buffer.limit();
+                buffer.position(buffer.position() + LENGTH_SIZE);
+                buffer.limit(end);
+                queue.offer(codec.decode(buffer));
+                buffer.limit(limit);
+                buffer.position(end);
+            }
+        }
+
+        @Override
+        public void closed() {
+            accepted.remove(channel);
+        }
+    }
+
+    private class Outbound implements Handler {
+        private final Address target;
+        private final ConcurrentLinkedQueue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean isIdle = new AtomicBoolean(true);
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>(); // owned by the selector loop
+        private final ByteBuffer gather[] = new ByteBuffer[MAX_GATHER];
+        private SocketChannel channel;
+        private SelectionKey key;
+
+        Outbound(Address target) {
+            this.target = target;
+        }
+
+        /**
+         * Called on the selector loop: connect if not connected yet, then write what is queued.
+         */
+        void flush() {
+            try {
+                if (channel == null) {
+                    channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    channel.connect(new InetSocketAddress(target.host(), target.port()));
+                    key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                } else if (channel.isConnected()) {
+                    write();
+                }
+            } catch (IOException e) {
+                closed();
+            }
+        }
+
+        @Override
+        public void handle(SelectionKey key) throws IOException {
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                key.interestOps(0);
+            }
+            write();
+        }
+
+        private void write() throws IOException {
+            while (true) {
+                ByteBuffer frame;
+                while ((frame = outbox.poll()) != null) {
+                    pending.add(frame);
+                }
+                while (!pending.isEmpty()) {
+                    int n = 0;
+                    for (ByteBuffer b : pending) {
+                        if (n == MAX_GATHER) break;
+                        gather[n++] = b;
+                    }
+                    channel.write(gather, 0, n);
+                    Arrays.fill(gather, 0, n, null);
+                    int written = 0;
+                    while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+                        pending.poll();
+                        written += 1;
+                    }
+                    if (written < n) {
+                        break; // socket send buffer is full
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                key.interestOps(0);
+                isIdle.set(true);
+                // a sender may have enqueued after the outbox was drained, but before idle flag was set
+                if (outbox.isEmpty() || !isIdle.compareAndSet(true, false)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void closed() {
+            connections.remove(target, this);
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+}
@@ -1,247 +1,558 @@
 package edu.common.impl;
 
 import edu.common.api.Address;
+import edu.common.api.Codec;
 import edu.common.api.Network;
 import edu.common.api.Payload;
-import edu.membership.api.Member;
-import edu.membership.api.Message;
 
 import java.io.IOException;
-import java.net.*;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Every datagram starts with a frame byte: WHOLE is followed by an encoded payload,
+ * FRAGMENT is followed by message id (int), fragment index (short), fragment count (short) and a chunk
+ * of an encoded payload that did not fit into MAX_DATAGRAM_SIZE, BATCH is followed by a sequence of
+ * length-prefixed (short) encoded payloads packed together by the {@link Coalescer}.
+ */
+public class UdpNetwork implements Network, AutoCloseable {
+    private static final byte WHOLE = 0;
+    private static final byte FRAGMENT = 1;
+    private static final byte BATCH = 2;
+    private static final int FRAGMENT_HEADER_SIZE = 1 + 4 + 2 + 2;
+
+    static final int MAX_DATAGRAM_SIZE = 1400; // stay below the typical 1500 bytes Ethernet MTU
+    static final int MAX_PAYLOAD_SIZE = 64 * 1024;
+    private static final int FRAGMENT_CHUNK_SIZE = MAX_DATAGRAM_SIZE - FRAGMENT_HEADER_SIZE;
+    private static final int MAX_FRAGMENTS = (MAX_PAYLOAD_SIZE + FRAGMENT_CHUNK_SIZE - 1) / FRAGMENT_CHUNK_SIZE;
+
+    private static final int RECEIVE_BUFFER_SIZE = 64 * 1024; // fits any UDP datagram
+    private static final int REASSEMBLY_MAX_BYTES = 4 * 1024 * 1024; // per receiver loop
+    private static final long REASSEMBLY_TIMEOUT_MILLIS = 1000;
+
+    private final Codec codec;
+    private final Supplier<ListenerQueue> queues;
+    private final boolean reusePort;
+    private final DatagramChannel senders[];
+    private final Receiver receivers[];
+    private final Coalescer coalescer;
+    private final AtomicInteger nextReceiver = new AtomicInteger();
+    private final AtomicInteger nextMessageId = new AtomicInteger();
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Address, InetSocketAddress> resolved = new ConcurrentHashMap<>();
+
+    public UdpNetwork() {
+        this(1, 1);
+    }
 
-public class UdpNetwork implements Network {
-    private static final byte HI = 1;
-    private static final byte LO = 0;
-
-    private static final byte MEMBER = 1;
-    private static final byte KEYVAL = 2;
+    public UdpNetwork(int nrOfSenders, int nrOfReceivers) {
+        this(new BinaryCodec(), nrOfSenders, nrOfReceivers);
+    }
 
-    private static final int SO_TIMEOUT = 1000; // 1 second receive timeout from socket
-    private static final int RECEIVE_BUFFER_SIZE = 1024;
+    public UdpNetwork(Codec codec, int nrOfSenders, int nrOfReceivers) {
+        this(codec, nrOfSenders, nrOfReceivers, 0, MAX_DATAGRAM_SIZE);
+    }
 
-    private static final int MAGIC = 0x0A0A0A0A;
+    public UdpNetwork(Codec codec, int nrOfSenders, int nrOfReceivers, long flushDelayMicros, int maxBatchBytes) {
+        this(codec, nrOfSenders, nrOfReceivers, flushDelayMicros, maxBatchBytes, ListenerQueue::new);
+    }
 
-    private Address readAddress(ByteBuffer buffer) {
-        byte[] addr = new byte[4];
-        buffer.get(addr, 0, 4);
-        int port = buffer.getInt();
-        return new RemoteAddress(addr, port);
+    /**
+     * @param codec wire encoding of payloads
+     * @param nrOfSenders number of long-lived sender channels, picked by sending thread
+     * @param nrOfReceivers number of selector loops shared by all listeners of this network
+     * @param flushDelayMicros how long payloads may wait to be packed with others for the same target, 0 to disable
+     * @param maxBatchBytes largest datagram carrying a batch of payloads
+     * @param queues factory of bounded queues for listeners
+     */
+    public UdpNetwork(Codec codec, int nrOfSenders, int nrOfReceivers, long flushDelayMicros, int maxBatchBytes,
+                      Supplier<ListenerQueue> queues) {
+        this(codec, nrOfSenders, nrOfReceivers, flushDelayMicros, maxBatchBytes, queues, false);
     }
 
-    private void writeAddress(ByteBuffer buffer, Address address) {
-        byte [] addr = new byte[4];
-        String bytes[] = address.host().split("\\.");
-        for (int i=0; i<4; i++) {
-            addr[i] = Byte.valueOf(bytes[i]);
+    /**
+     * @param reusePort bind one socket per receiver loop to each listened port with SO_REUSEPORT (where supported),
+     *                  so that a single listener receives and decodes on all receiver loops. The kernel picks
+     *                  the socket by hash of source and destination, so payloads from one sender stay in order.
+     */
+    public UdpNetwork(Codec codec, int nrOfSenders, int nrOfReceivers, long flushDelayMicros, int maxBatchBytes,
+                      Supplier<ListenerQueue> queues, boolean reusePort) {
+        this.codec = codec;
+        this.queues = queues;
+        this.reusePort = reusePort;
+        this.coalescer = (flushDelayMicros > 0)
+                ? new Coalescer(codec, BATCH, Math.min(maxBatchBytes, RECEIVE_BUFFER_SIZE), flushDelayMicros, this::transmit)
+                : null;
+        this.receivers = new Receiver[nrOfReceivers];
+        for (int i=0; i<nrOfReceivers; i++) {
+            receivers[i] = new Receiver();
+        }
+        this.senders = new DatagramChannel[nrOfSenders];
+        try {
+            for (int i=0; i<nrOfSenders; i++) {
+                senders[i] = DatagramChannel.open();
+            }
+        } catch (IOException e) {
+            close();
+            throw new IllegalStateException("Failed to open sender channel", e);
         }
-        buffer.put(addr,0, 4);
-        buffer.putInt(address.port());
     }
 
-    private Payload readKeyval(ByteBuffer buffer) {
-        int magic = buffer.getInt();
-        if (magic != MAGIC) {
-            throw new IllegalStateException("Invalid magic int");
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(FRAGMENT_HEADER_SIZE + MAX_PAYLOAD_SIZE);
         }
+        return buffer;
+    }
 
-        int typeIdx = buffer.getInt();
-        if (typeIdx < 0 || typeIdx >= edu.kvstore.api.Message.Type.values().length) {
-            throw new IllegalStateException("Invalid message type");
-        }
+    private void release(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
 
-        edu.kvstore.api.Message.Type type = edu.kvstore.api.Message.Type.values()[typeIdx];
+    private DatagramChannel sender() {
+        if (senders.length == 1) return senders[0];
+        return senders[(int) (Thread.currentThread().getId() % senders.length)];
+    }
+
+    private InetSocketAddress resolve(Address target) {
+        InetSocketAddress resolved = this.resolved.get(target);
+        if (resolved == null) {
+            resolved = this.resolved.computeIfAbsent(target, (a) -> new InetSocketAddress(a.host(), a.port()));
+        }
+        return resolved;
+    }
 
-        long seq = buffer.getLong();
+    /**
+     * Send the payload encoded at [FRAGMENT_HEADER_SIZE, end) in buffer as fragments. Each fragment's header
+     * is written right in front of its chunk, over the tail of the previous chunk that has already been sent.
+     */
+    private void fragment(DatagramChannel channel, InetSocketAddress target, ByteBuffer buffer, int end) throws IOException {
+        final int chunk = FRAGMENT_CHUNK_SIZE;
+        final int count = (end - FRAGMENT_HEADER_SIZE + chunk - 1) / chunk;
+        final int id = nextMessageId.getAndIncrement();
+        for (int i=0; i<count; i++) {
+            int from = FRAGMENT_HEADER_SIZE + i * chunk;
+            int at = from - FRAGMENT_HEADER_SIZE;
+            buffer.clear();
+            buffer.put(at, FRAGMENT);
+            buffer.putInt(at + 1, id);
+            buffer.putShort(at + 5, (short) i);
+            buffer.putShort(at + 7, (short) count);
+            buffer.limit(Math.min(from + chunk, end));
+            buffer.position(at);
+            channel.send(buffer, target);
+        }
+    }
 
-        Address sender = readAddress(buffer);
+    private void transmit(Address target, ByteBuffer datagram) throws IOException {
+        sender().send(datagram, resolve(target));
+    }
 
-        int keyLen = buffer.getInt();
-        int valLen = buffer.getInt();
+    /**
+     * @return batching layer with its metrics, or null if batching is disabled
+     */
+    public Coalescer coalescer() {
+        return coalescer;
+    }
 
-        StringBuilder sb = new StringBuilder();
-        for (int i=0; i<keyLen; i++) {
-            sb.append(buffer.getChar());
+    @Override
+    public boolean send(Address target, Payload payload) {
+        if (coalescer != null) {
+            try {
+                return coalescer.add(target, payload, this::sendWhole);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
         }
-        String key = sb.toString();
+        return sendWhole(target, payload);
+    }
 
-        String value = null;
-        if (valLen > 0) {
-            sb = new StringBuilder();
-            for (int i=0; i<valLen; i++) {
-                sb.append(buffer.getChar());
+    /**
+     * Send the payload in a datagram of its own, or in fragments if it does not fit into one.
+     */
+    private boolean sendWhole(Address target, Payload payload) {
+        ByteBuffer buffer = acquire();
+        try {
+            buffer.position(FRAGMENT_HEADER_SIZE);
+            codec.encode(payload, buffer);
+            int end = buffer.position();
+            if (end - FRAGMENT_HEADER_SIZE + 1 <= MAX_DATAGRAM_SIZE) {
+                buffer.put(FRAGMENT_HEADER_SIZE - 1, WHOLE);
+                buffer.limit(end);
+                buffer.position(FRAGMENT_HEADER_SIZE - 1);
+                sender().send(buffer, resolve(target));
+            } else {
+                fragment(sender(), resolve(target), buffer, end);
             }
-            value = sb.toString();
+            return true;
+        } catch (IOException | BufferOverflowException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            release(buffer);
         }
+    }
 
-        boolean replica = buffer.get() > 0;
-
-        return Payload.of(new edu.kvstore.api.Message(type, seq, sender, key, value, replica));
+    @Override
+    public Listener listen(final Address address) {
+        return listen(address, queues.get());
     }
 
-    private Payload readMember(ByteBuffer buffer) {
-        int magic = buffer.getInt();
-        if (magic != MAGIC) {
-            throw new IllegalStateException("Invalid magic int");
+    /**
+     * Listen to the address, offering received payloads to the given queue.
+     */
+    Listener listen(final Address address, final ListenerQueue queue) {
+        final Sink sink = encoded -> queue.offer(codec.decode(encoded));
+        final int first = nextReceiver.getAndIncrement() & Integer.MAX_VALUE;
+        final DatagramChannel channels[] = reusePort ? bindShared(address, receivers.length) : new DatagramChannel[] {bind(address)};
+        for (int i=0; i<channels.length; i++) {
+            receivers[(first + i) % receivers.length].register(channels[i], sink);
         }
 
-        int typeIdx = buffer.getInt();
-        if (typeIdx < 0 || typeIdx >= Message.Type.values().length) {
-            throw new IllegalStateException("Invalid message type");
-        }
-        Message.Type type = Message.Type.values()[typeIdx];
+        return new Listener() {
+            @Override
+            public Queue<Payload> queue() {
+                return queue;
+            }
 
-        Address address = readAddress(buffer);
+            @Override
+            public Payload poll(long timeout, TimeUnit unit) throws InterruptedException {
+                return queue.poll(timeout, unit);
+            }
 
-        long ts = buffer.getLong();
-        long hb = buffer.getLong();
-        Member member = new Member(address, ts, hb);
+            @Override
+            public CompletableFuture<Payload> next() {
+                return queue.next();
+            }
 
-        if (type == Message.Type.MEMBER_LIST) {
-            List<Member> memberList = new ArrayList<>();
-            int n = buffer.getInt();
-            for (int i=0; i<n; i++) {
-                Address a = readAddress(buffer);
-                long t = buffer.getLong();
-                long h = buffer.getLong();
-                Member m = new Member(a, t, h);
-                memberList.add(m);
+            @Override
+            public void close() {
+                for (int i=0; i<channels.length; i++) {
+                    receivers[(first + i) % receivers.length].unregister(channels[i]);
+                }
             }
-            return Payload.of(new Message(type, member, memberList));
-        } else {
-            return Payload.of(new Message(type, member, Collections.emptyList()));
-        }
+        };
     }
 
-    private Payload read(ByteBuffer buffer) {
-        byte id = buffer.get();
-        if (id == MEMBER) return readMember(buffer);
-        else return readKeyval(buffer);
+    /**
+     * Listen to the address, handing received payloads straight to the handler over a preallocated ring buffer
+     * instead of a listener queue. The handler is called from the pipeline's own thread. The ring has a single
+     * producer, so the pipeline always receives on a single socket.
+     * @param address address to listen to
+     * @param handler handler of received payloads
+     * @param ringSize number of slots in the ring, a power of two
+     * @param waitStrategy how the handler thread waits for payloads
+     * @return the pipeline, closing it stops listening
+     */
+    public Pipeline listen(Address address, Consumer<Payload> handler, int ringSize, Pipeline.WaitStrategy waitStrategy) {
+        final DatagramChannel channel = bind(address);
+        final Receiver receiver = receivers[(nextReceiver.getAndIncrement() & Integer.MAX_VALUE) % receivers.length];
+        final Pipeline pipeline = new Pipeline(codec, ringSize, MAX_DATAGRAM_SIZE, waitStrategy, handler,
+                () -> receiver.unregister(channel));
+        receiver.register(channel, pipeline::publish);
+        return pipeline;
     }
 
-    private ByteBuffer write(edu.kvstore.api.Message message) {
-        ByteBuffer temp = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
-        temp.put(KEYVAL);
-        temp.putInt(MAGIC);
-        temp.putInt(message.type.ordinal());
-        temp.putLong(message.seqNr);
-        writeAddress(temp, message.sender);
-        temp.putInt(message.key.length());
-        if (message.value != null) {
-            temp.putInt(message.value.length());
-        } else {
-            temp.putInt(0);
-        }
-        char k[] = message.key.toCharArray();
-        for (char c : k) {
-            temp.putChar(c);
+    private static DatagramChannel bind(Address address) {
+        try {
+            // bind before returning, so that nothing sent after listen() is lost
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(address.port()));
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to listen to " + address, e);
         }
-        if (message.value != null) {
-            char v[] = message.value.toCharArray();
-            for (char c : v) {
-                temp.putChar(c);
+    }
+
+    /**
+     * Bind `n` sockets to the address's port with SO_REUSEPORT, or a single socket if the option is not supported.
+     */
+    private static DatagramChannel[] bindShared(Address address, int n) {
+        final DatagramChannel channels[] = new DatagramChannel[n];
+        int bound = 0;
+        try {
+            for (; bound<n; bound++) {
+                DatagramChannel channel = DatagramChannel.open();
+                SocketOption<Boolean> option = reusePortOption(channel);
+                if (option == null) {
+                    channel.close();
+                    break;
+                }
+                channel.setOption(option, true);
+                channel.bind(new InetSocketAddress(address.port()));
+                channel.configureBlocking(false);
+                channels[bound] = channel;
             }
+        } catch (IOException e) {
+            for (int i=0; i<bound; i++) {
+                closeQuietly(channels[i]);
+            }
+            throw new IllegalStateException("Failed to listen to " + address, e);
         }
-        temp.put(message.replica ? HI : LO);
-        int size = temp.position();
-        temp.flip();
-        ByteBuffer buffer = ByteBuffer.allocate(size);
-        buffer.put(temp);
-        return buffer;
+        return (bound == 0) ? new DatagramChannel[] {bind(address)} : Arrays.copyOf(channels, bound);
     }
 
-    private ByteBuffer write(edu.membership.api.Message message) {
-        ByteBuffer temp = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
-        temp.put(MEMBER);
-        temp.putInt(MAGIC);
-        temp.putInt(message.type.ordinal());
-        writeAddress(temp, message.sender.address);
-        temp.putLong(message.sender.timestamp);
-        temp.putLong(message.sender.heartbeat);
-        if (message.type == Message.Type.MEMBER_LIST) {
-            int n = message.members.size();
-            temp.putInt(n);
-            for (int i = 0; i < n; i++) {
-                writeAddress(temp, message.members.get(i).address);
-                temp.putLong(message.members.get(i).timestamp);
-                temp.putLong(message.members.get(i).heartbeat);
-            }
-        }
-        int size = temp.position();
-        temp.flip();
-        ByteBuffer buffer = ByteBuffer.allocate(size);
-        buffer.put(temp);
-        return buffer;
+    /**
+     * SO_REUSEPORT is looked up by name: StandardSocketOptions only has it since Java 9.
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption(DatagramChannel channel) {
+        for (SocketOption<?> option : channel.supportedOptions()) {
+            if ("SO_REUSEPORT".equals(option.name()) && option.type() == Boolean.class) {
+                return (SocketOption<Boolean>) option;
+            }
+        }
+        return null;
     }
 
-    private ByteBuffer write(Payload payload) {
-        if (payload.keyval != null) return write(payload.keyval);
-        else return write(payload.member);
+    private static void closeQuietly(DatagramChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            /* ignore */
+        }
     }
 
     @Override
-    public boolean send(Address target, Payload payload) {
-        try(DatagramSocket socket = new DatagramSocket(0)) {
-            socket.setSoTimeout(SO_TIMEOUT);
-            ByteBuffer buffer = write(payload);
-            byte data[] = buffer.array();
-            DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getByName(target.host()), target.port());
-            socket.send(packet);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+    public void close() {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        for (Receiver receiver : receivers) {
+            receiver.close();
+        }
+        for (DatagramChannel channel : senders) {
+            if (channel == null) continue;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                /* ignore */
+            }
         }
     }
 
-    @Override
-    public Listener listen(final Address address) {
-        final ConcurrentLinkedQueue<Payload> queue = new ConcurrentLinkedQueue<>();
-        final AtomicBoolean isRunning = new AtomicBoolean(true);
+    /**
+     * Destination of encoded payloads received by a listener channel, called on the receiver thread.
+     */
+    private interface Sink {
+        void deliver(ByteBuffer encoded);
+    }
 
-        Thread thread = new Thread(() -> {
-            try (DatagramSocket socket = new DatagramSocket(address.port())) {
-                socket.setSoTimeout(SO_TIMEOUT);
-                while (isRunning.get()) {
+    /**
+     * Selector event loop servicing any number of listener channels from a single thread.
+     * The thread is started on the first registration and receives into one reusable direct buffer.
+     */
+    private class Receiver implements Runnable {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+        private final Reassembler reassembler = new Reassembler(REASSEMBLY_MAX_BYTES, MAX_FRAGMENTS,
+                TimeUnit.MILLISECONDS.toNanos(REASSEMBLY_TIMEOUT_MILLIS));
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean isRunning = new AtomicBoolean(true);
+        private Selector selector;
+        private Thread thread;
+        private boolean stopped = false; // guarded by this, set once the loop no longer runs tasks
+
+        private synchronized Selector selector() throws IOException {
+            if (selector == null) {
+                selector = Selector.open();
+                thread = new Thread(this, "udp-receiver");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return selector;
+        }
 
+        void register(DatagramChannel channel, Sink sink) {
+            try {
+                final Selector selector = selector();
+                tasks.offer(() -> {
                     try {
-                        DatagramPacket packet = new DatagramPacket(new byte[RECEIVE_BUFFER_SIZE], RECEIVE_BUFFER_SIZE);
-                        socket.receive(packet);
-                        if (packet.getData().length > 0) {
-                            ByteBuffer buffer = ByteBuffer.allocate(packet.getLength());
-                            buffer.put(packet.getData(), 0, packet.getLength());
-                            buffer.flip();
-                            final Payload payload = read(buffer);
-                            queue.offer(payload);
-                        }
-                    } catch (IOException e) {
-                        /* ignore */
+                        channel.register(selector, SelectionKey.OP_READ, sink);
+                    } catch (ClosedChannelException e) {
+                        /* listener closed before it was registered */
                     }
+                });
+                selector.wakeup();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open selector", e);
+            }
+        }
 
+        /**
+         * Close the channel and deregister it on the receiver loop, waiting for that: the port is released once
+         * the channel is deregistered from the selector.
+         */
+        void unregister(DatagramChannel channel) {
+            final CountDownLatch done = new CountDownLatch(1);
+            final Runnable task = () -> {
+                try {
+                    SelectionKey key = channel.keyFor(selector);
+                    if (key != null) key.cancel();
+                    channel.close();
+                    selector.selectNow();
+                } catch (IOException e) {
+                    /* ignore */
+                } finally {
+                    done.countDown();
                 }
-            } catch (SocketException e) {
-                e.printStackTrace();
+            };
+            synchronized (this) {
+                if (selector == null || stopped) {
+                    close(channel);
+                    return;
+                }
+                if (Thread.currentThread() == thread) {
+                    task.run();
+                    return;
+                }
+                tasks.offer(task);
+                selector.wakeup();
+            }
+            boolean interrupted = false;
+            while (done.getCount() > 0) {
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
-        });
-        thread.setDaemon(true);
-        thread.start();
+        }
 
-        return new Listener() {
-            @Override
-            public Queue<Payload> queue() {
-                return queue;
+        private void close(DatagramChannel channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                /* ignore */
             }
+        }
 
-            @Override
-            public void close() {
-                isRunning.set(false);
+        private synchronized void wakeup() {
+            if (selector != null) {
+                selector.wakeup();
             }
-        };
+        }
+
+        void close() {
+            isRunning.set(false);
+            wakeup();
+        }
+
+        private void read(SocketAddress from, ByteBuffer buffer, Sink sink) {
+            byte frame = buffer.get();
+            if (frame == WHOLE) {
+                sink.deliver(buffer);
+            } else if (frame == BATCH) {
+                final int limit = buffer.limit();
+                while (buffer.position() < limit) {
+                    int end = (buffer.getShort() & 0xFFFF) + buffer.position();
+                    buffer.limit(end);
+                    sink.deliver(buffer);
+                    buffer.limit(limit);
+                    buffer.position(end);
+                }
+            } else if (frame == FRAGMENT) {
+                int id = buffer.getInt();
+                int index = buffer.getShort() & 0xFFFF;
+                int count = buffer.getShort() & 0xFFFF;
+                ByteBuffer whole = reassembler.add(from, id, index, count, buffer, System.nanoTime());
+                if (whole != null) {
+                    sink.deliver(whole);
+                }
+            } else {
+                throw new IllegalStateException("Invalid frame: " + frame);
+            }
+        }
+
+        private void receive(SelectionKey key) {
+            DatagramChannel channel = (DatagramChannel) key.channel();
+            Sink sink = (Sink) key.attachment();
+            try {
+                while (true) {
+                    buffer.clear();
+                    SocketAddress from = channel.receive(buffer);
+                    if (from == null) {
+                        break;
+                    }
+                    buffer.flip();
+                    try {
+                        read(from, buffer, sink);
+                    } catch (RuntimeException e) {
+                        /* ignore malformed datagram */
+                    }
+                }
+            } catch (IOException e) {
+                key.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (isRunning.get()) {
+                    selector.select(REASSEMBLY_TIMEOUT_MILLIS);
+                    reassembler.expire(System.nanoTime());
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            receive(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                synchronized (this) {
+                    stopped = true;
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run(); // listeners closing meanwhile wait for their tasks
+                }
+                for (SelectionKey key : selector.keys()) {
+                    try {
+                        key.channel().close();
+                    } catch (IOException e) {
+                        /* ignore */
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    /* ignore */
+                }
+            }
+        }
     }
 }
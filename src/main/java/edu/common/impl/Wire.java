@@ -0,0 +1,135 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Primitives of the binary wire format: unsigned LEB128 varints, zigzag-encoded signed varints
+ * varint-length-prefixed UTF-8 strings and addresses (IPv4 as int, port as varint), written straight into
+ * (and read from) a ByteBuffer.
+ */
+public final class Wire {
+
+    private Wire() {}
+
+    public static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static long getVarint(ByteBuffer buffer) {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    public static int getVarintInt(ByteBuffer buffer) {
+        long value = getVarint(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    public static void putZigzag(ByteBuffer buffer, long value) {
+        putVarint(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    public static long getZigzag(ByteBuffer buffer) {
+        long value = getVarint(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Number of bytes the string takes in UTF-8, unpaired surrogates are counted as a single '?'.
+     */
+    public static int utf8Length(String s) {
+        int len = s.length();
+        int n = len;
+        for (int i=0; i<len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                n += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 2;
+                i += 1;
+            } else if (!Character.isSurrogate(c)) {
+                n += 2;
+            }
+        }
+        return n;
+    }
+
+    public static void putString(ByteBuffer buffer, String s) {
+        int n = utf8Length(s);
+        putVarint(buffer, n);
+        int len = s.length();
+        if (n == len) {
+            for (int i=0; i<len; i++) {
+                buffer.put((byte) s.charAt(i));
+            }
+            return;
+        }
+        for (int i=0; i<len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int n = getVarintInt(buffer);
+        if (n > buffer.remaining()) {
+            throw new IllegalStateException("String length exceeds buffer: " + n);
+        }
+        if (buffer.hasArray()) {
+            String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), n, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + n);
+            return s;
+        }
+        byte bytes[] = new byte[n];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void putAddress(ByteBuffer buffer, Address address) {
+        long id = address.id();
+        buffer.putInt((int) (id >>> 16));
+        putVarint(buffer, id & 0xFFFF);
+    }
+
+    public static Address getAddress(ByteBuffer buffer) {
+        int ip = buffer.getInt();
+        int port = getVarintInt(buffer);
+        return RemoteAddress.of(ip, port);
+    }
+
+}
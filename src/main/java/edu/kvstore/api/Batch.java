@@ -0,0 +1,117 @@
+package edu.kvstore.api;
+
+import edu.common.api.Address;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Operation on many keys sharing the same master, applied and replicated by the master as a unit.
+ * Types are the ones of {@link Message}: READ, CREATE, UPDATE, DELETE in requests, ACK, OK, FAIL, REDIRECT
+ * in replies. Values go along with keys, one per key (null where there is none).
+ */
+public class Batch {
+    public final Message.Type type;
+    public final long seqNr;
+    public final Address sender;
+    public final List<String> keys;
+    public final List<String> values;
+    public final boolean replica;
+
+    public Batch(Message.Type type, long seqNr, Address sender, List<String> keys, List<String> values, boolean replica) {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException("Keys and values mismatch: " + keys.size() + " != " + values.size());
+        }
+        this.type = type;
+        this.seqNr = seqNr;
+        this.sender = sender;
+        this.keys = keys;
+        this.values = values;
+        this.replica = replica;
+    }
+
+    /**
+     * Batch of keys without values (to read or delete).
+     */
+    public Batch(Message.Type type, long seqNr, Address sender, List<String> keys) {
+        this(type, seqNr, sender, keys, new ArrayList<>(Collections.nCopies(keys.size(), null)), false);
+    }
+
+    public Batch ok(Address sender) {
+        return new Batch(Message.Type.OK, seqNr, sender, keys, values, replica);
+    }
+
+    public Batch fail(Address sender) {
+        return new Batch(Message.Type.FAIL, seqNr, sender, keys, values, replica);
+    }
+
+    public Batch accept(long seqNr) {
+        return new Batch(type, seqNr, sender, keys, values, replica);
+    }
+
+    public Batch ack() {
+        return new Batch(Message.Type.ACK, seqNr, sender, keys, values, replica);
+    }
+
+    public Batch replica(Address master) {
+        return new Batch(type, seqNr, master, keys, values, true);
+    }
+
+    /**
+     * Reply to a batch sent to a node that is not the master of its keys: the sender of the reply is the master.
+     */
+    public Batch redirect(Address master) {
+        return new Batch(Message.Type.REDIRECT, seqNr, master, Collections.emptyList(), Collections.emptyList(), replica);
+    }
+
+    /**
+     * Reply to a batch whose keys have different masters, one per master: the sender of the reply is the master,
+     * the keys are the ones of the batch it is the master of.
+     */
+    public Batch redirect(Address master, List<String> keys) {
+        return new Batch(Message.Type.REDIRECT, seqNr, master, keys, new ArrayList<>(Collections.nCopies(keys.size(), null)), replica);
+    }
+
+    public Batch values(List<String> values) {
+        return new Batch(Message.Type.ACK, seqNr, sender, keys, values, replica);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Batch batch = (Batch) o;
+
+        return (seqNr == batch.seqNr) &&
+                (replica == batch.replica) &&
+                (type == batch.type) &&
+                sender.equals(batch.sender) &&
+                keys.equals(batch.keys) &&
+                values.equals(batch.values);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type.hashCode();
+        result = 31 * result + (int) (seqNr ^ (seqNr >>> 32));
+        result = 31 * result + sender.hashCode();
+        result = 31 * result + keys.hashCode();
+        result = 31 * result + values.hashCode();
+        result = 31 * result + (replica ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Batch{" +
+                "type=" + type +
+                ", seqNr=" + seqNr +
+                ", sender=" + sender +
+                ", keys=" + keys +
+                ", values=" + values +
+                ", replica=" + replica +
+                '}';
+    }
+}
@@ -4,4 +4,12 @@ public interface KVNode {
 
     void handle(Message message);
 
+    void handle(Batch batch);
+
+    /**
+     * Periodic work: fail pending requests past their timeout even when no messages come in.
+     * Also re-replicates keys after a membership change, a bounded number of them per cycle.
+     */
+    void cycle();
+
 }
@@ -1,5 +1,7 @@
 package edu.kvstore.api;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 public interface KVStore<K, V> {
@@ -40,4 +42,25 @@ public interface KVStore<K, V> {
      */
     boolean delete(K key);
 
+    /**
+     * Read values for given keys at once
+     * @param keys keys
+     * @return values of the keys that have one
+     */
+    Map<K, String> multiGet(Collection<K> keys);
+
+    /**
+     * Create or replace key-value pairs at once
+     * @param entries key-value pairs
+     * @return for each key, true if stored successfully, false otherwise
+     */
+    Map<K, Boolean> multiPut(Map<K, V> entries);
+
+    /**
+     * Delete key-value pairs for given keys at once
+     * @param keys keys
+     * @return for each key, true if deleted successfully, false otherwise
+     */
+    Map<K, Boolean> multiDelete(Collection<K> keys);
+
 }
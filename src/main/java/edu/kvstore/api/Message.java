@@ -2,6 +2,9 @@ package edu.kvstore.api;
 
 import edu.common.api.Address;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class Message {
     public enum Type {
         READ,
@@ -11,43 +14,100 @@ public class Message {
         REPLICATE,
         ACK,
         OK,
-        FAIL
+        FAIL,
+        REDIRECT,
+        LEASE, // read that also asks the master for a lease on the key
+        INVALIDATE // revocation of a lease by the master, returned by the holder to confirm it
     }
 
     public final Type type;
     public final long seqNr;
     public final Address sender;
     public final String key;
-    public final String value;
     public final boolean replica;
 
+    private String value; // decoded from valueBytes on first access
+    private final ByteBuffer valueBytes;
+    private final ByteBuffer encoded;
+
     public Message(Type type, long seqNr, Address sender, String key, String value) {
         this(type, seqNr, sender, key, value, false);
     }
 
     public Message(Type type, long seqNr, Address sender, String key, String value, boolean replica) {
+        this(type, seqNr, sender, key, value, null, replica, null);
+    }
+
+    /**
+     * Message received from the network: the value is kept as UTF-8 bytes and decoded only when accessed,
+     * the encoded message is kept to be sent on as is when forwarded.
+     * @param valueBytes UTF-8 bytes of the value, or null if there is no value
+     * @param encoded the whole message as encoded by the codec that decoded it, or null
+     */
+    public Message(Type type, long seqNr, Address sender, String key, ByteBuffer valueBytes, boolean replica, ByteBuffer encoded) {
+        this(type, seqNr, sender, key, null, valueBytes, replica, encoded);
+    }
+
+    private Message(Type type, long seqNr, Address sender, String key, String value, ByteBuffer valueBytes, boolean replica, ByteBuffer encoded) {
         this.type = type;
         this.seqNr = seqNr;
         this.sender = sender;
         this.key = key;
         this.value = value;
+        this.valueBytes = valueBytes;
         this.replica = replica;
+        this.encoded = encoded;
+    }
+
+    /**
+     * Derive a message with different header fields, keeping the value as it is (decoded or not).
+     */
+    private Message derive(Type type, long seqNr, Address sender, boolean replica) {
+        return new Message(type, seqNr, sender, key, value, (value == null) ? valueBytes : null, replica, null);
+    }
+
+    public String value() {
+        if (value == null && valueBytes != null) {
+            value = StandardCharsets.UTF_8.decode(valueBytes.duplicate()).toString();
+        }
+        return value;
+    }
+
+    /**
+     * @return UTF-8 bytes of the value if it was received and not decoded yet, null otherwise
+     */
+    public ByteBuffer valueBytes() {
+        return (value == null && valueBytes != null) ? valueBytes.duplicate() : null;
+    }
+
+    /**
+     * @return the message as it was received, if it was received from the network
+     */
+    public ByteBuffer encoded() {
+        return (encoded != null) ? encoded.duplicate() : null;
     }
 
     public Message ok(Address sender) {
-        return new Message(Type.OK, seqNr, sender, key, value, replica);
+        return derive(Type.OK, seqNr, sender, replica);
     }
 
     public Message fail(Address sender) {
-        return new Message(Type.FAIL, seqNr, sender, key, value, replica);
+        return derive(Type.FAIL, seqNr, sender, replica);
     }
 
-    public Message accept(long seqNr) { return new Message(type, seqNr, sender, key, value, replica); }
+    public Message accept(long seqNr) { return derive(type, seqNr, sender, replica); }
 
-    public Message ack() { return new Message(Type.ACK, seqNr, sender, key, value, replica); }
+    public Message ack() { return derive(Type.ACK, seqNr, sender, replica); }
 
     public Message replica(Address master) {
-        return new Message(type, seqNr, master, key, value, true);
+        return derive(type, seqNr, master, true);
+    }
+
+    /**
+     * Reply to a request sent to a node that is not the key's master: the sender of the reply is the master.
+     */
+    public Message redirect(Address master) {
+        return new Message(Type.REDIRECT, seqNr, master, key, null, replica);
     }
 
     public Message value(String value) {
@@ -66,7 +126,7 @@ public class Message {
                 (type == message.type) &&
                 sender.equals(message.sender) &&
                 key.equals(message.key) &&
-                (value == null) ? (message.value == null) : value.equals(message.value);
+                ((value() == null) ? (message.value() == null) : value().equals(message.value()));
     }
 
     @Override
@@ -75,7 +135,7 @@ public class Message {
         result = 31 * result + (int) (seqNr ^ (seqNr >>> 32));
         result = 31 * result + sender.hashCode();
         result = 31 * result + key.hashCode();
-        result = 31 * result + value.hashCode();
+        result = 31 * result + (value() != null ? value().hashCode() : 0);
         result = 31 * result + (replica ? 1 : 0);
         return result;
     }
@@ -87,7 +147,7 @@ public class Message {
                 ", seqNr=" + seqNr +
                 ", sender=" + sender +
                 ", key='" + key + '\'' +
-                ", value='" + value + '\'' +
+                ", value='" + value() + '\'' +
                 ", replica=" + replica +
                 '}';
     }
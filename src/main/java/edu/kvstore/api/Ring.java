@@ -20,4 +20,11 @@ public interface Ring<K> extends Membership {
      */
     Address pick(K key, long now);
 
+    /**
+     * Position of the key in the ring: keys with the same token are always placed on the same nodes.
+     * @param key key
+     * @return token of the key
+     */
+    int token(K key);
+
 }
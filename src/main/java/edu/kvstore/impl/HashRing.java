@@ -54,6 +54,11 @@ public class HashRing implements Ring<String> {
         }
     }
 
+    @Override
+    public int token(String key) {
+        return hash(key);
+    }
+
     @Override
     public void add(Member node, long now) {
         membership.add(node, now);
@@ -11,11 +11,24 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 public class KVNodeImpl implements KVNode {
     private static final Logger logger = LogManager.getLogger(KVNodeImpl.class);
 
+    /**
+     * Term of a lease granted with a LEASE read: until it expires the reader may serve the value from its cache,
+     * unless the master revokes the lease on a write to the key. The master acknowledges the write once each holder
+     * confirmed the revocation or its lease expired, and a node that takes over as master of a key waits for leases
+     * of the previous master to expire before acknowledging writes to it.
+     */
+    public static final long LEASE_MILLIS = 1000;
+
+    /**
+     * Number of keys checked for re-replication per cycle after a membership change, to keep the work of healing
+     * the cluster out of the way of requests.
+     */
+    public static final int REBALANCE_KEYS_PER_CYCLE = 256;
+
     private final Address address;
     private final Network network;
     private final Supplier<Long> clock;
@@ -27,10 +40,29 @@ public class KVNodeImpl implements KVNode {
     private final int replicationFactor;
     private final int minimumQuorum;
 
-    private long seq = 0L;
+    private long seq = 0L; // ids of pending requests
+    private long batchSeq = 0L; // ids of pending batches, apart from requests: replies are matched by their class
+
+    private final Map<String, Map<Address, Long>> leases = new HashMap<>(); // expiry time by holder by key
+    private final Map<String, Map<Address, Revocation>> revocations = new HashMap<>(); // not confirmed yet, by key
+    private final Map<Integer, Long> takeovers = new HashMap<>(); // expiry of previous master's leases by token
+    private long revocationSeq = 0L;
+    private long leasesSweptAt = 0L;
+    private final Set<Long> held = new LinkedHashSet<>(); // ids of replicated requests waiting for leases to end
+    private final Set<Long> heldBatches = new LinkedHashSet<>(); // ids of replicated batches waiting for leases
     private final ConcurrentHashMap<Long, Request> pendingRequests = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, BatchRequest> pendingBatches = new ConcurrentHashMap<>();
+    private final TimerWheel<Long> timeouts; // ids of pending requests by deadline
+    private final TimerWheel<Long> batchTimeouts; // ids of pending batches by deadline
+    private final ArrayList<Long> expired = new ArrayList<>();
 
-    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Message>> bufferedRequests = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<String>> tokens = new HashMap<>(); // keys with copies here by ring token
+    private final Map<Integer, List<Address>> placements = new HashMap<>(); // replicas by token, as of last change
+    private final ArrayDeque<String> rebalancing = new ArrayDeque<>(); // keys of tokens whose replicas changed
+    private Set<Address> members = Collections.emptySet();
+
+    // messages and batches waiting for a write to the key to be replicated
+    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Object>> bufferedRequests = new ConcurrentHashMap<>();
 
     public KVNodeImpl(Address address, Network network, Supplier<Long> clock, Ring<String> ring) {
         this(address, network, ring, clock, 100, 3);
@@ -47,11 +79,8 @@ public class KVNodeImpl implements KVNode {
         this.timeoutMillis = timeoutMillis;
         this.replicationFactor = replicationFactor;
         this.minimumQuorum = replicationFactor / 2 + 1;
-    }
-
-    private long tick() {
-        seq += 1;
-        return clock.get();
+        this.timeouts = new TimerWheel<>(1L, TimerWheel.slotsFor(timeoutMillis), clock.get());
+        this.batchTimeouts = new TimerWheel<>(1L, TimerWheel.slotsFor(timeoutMillis), clock.get());
     }
 
     private void send(Address address, Message message) {
@@ -59,18 +88,188 @@ public class KVNodeImpl implements KVNode {
         logger.debug("[{}] Sent {} to {}", this.address, message, address);
     }
 
-    private void pend(Message message, long now, long seq) {
+    private void send(Address address, Batch batch) {
+        network.send(address, Payload.of(batch));
+        logger.debug("[{}] Sent {} to {}", this.address, batch, address);
+    }
+
+    private void pend(Message message, long now, long deadline, long seq) {
         pendingRequests.put(seq, new Request(message, now,1));
+        timeouts.schedule(deadline, seq);
         logger.debug("[{}] Pending request: {}", this.address, message);
     }
 
+    /**
+     * A request replicated by then is only waiting for leases on its key, and the deadline is past their expiry.
+     */
+    private void timeout(long seqNr, long now) {
+        Request req = pendingRequests.remove(seqNr);
+        if (req != null) {
+            // Pending request failed due to timestamp
+            logger.debug("[{}] Timeout for: {}", this.address, req);
+            held.remove(seqNr);
+            send(req.msg.sender, (req.count >= minimumQuorum) ? req.msg.ok(address) : req.msg.fail(address));
+            release(req.msg, now);
+        }
+    }
+
+    private void timeoutBatch(long seqNr, long now) {
+        BatchRequest batch = pendingBatches.remove(seqNr);
+        if (batch != null) {
+            logger.debug("[{}] Timeout for: {}", this.address, batch);
+            heldBatches.remove(seqNr);
+            send(batch.batch.sender, (batch.count >= minimumQuorum) ? batch.batch.ok(address) : batch.batch.fail(address));
+            release(batch.batch, now);
+        }
+    }
+
     private void cleanup(long now) {
-        for (Map.Entry<Long, Request> req : pendingRequests.entrySet()) {
-            if (now - req.getValue().ts >= timeoutMillis) {
-                // Pending request failed due to timestamp
-                logger.debug("[{}] Timeout for: {}", this.address, req);
-                pendingRequests.remove(req.getKey());
-                send(req.getValue().msg.sender, req.getValue().msg.fail(address));
+        // requests already replied to are not in the pending maps any more, their timeouts do nothing;
+        // requests released on a timeout may schedule timeouts, so they are handled once the wheel is done
+        resume(now);
+        timeouts.expire(now, expired::add);
+        expired.forEach(seqNr -> timeout(seqNr, now));
+        expired.clear();
+        batchTimeouts.expire(now, expired::add);
+        expired.forEach(seqNr -> timeoutBatch(seqNr, now));
+        expired.clear();
+        if (now - leasesSweptAt >= LEASE_MILLIS) {
+            for (Map<Address, Long> holders : leases.values()) {
+                holders.values().removeIf(expiry -> expiry <= now);
+            }
+            leases.values().removeIf(Map::isEmpty);
+            for (Map<Address, Revocation> holders : revocations.values()) {
+                holders.values().removeIf(revocation -> revocation.expiry <= now);
+            }
+            revocations.values().removeIf(Map::isEmpty);
+            takeovers.values().removeIf(expiry -> expiry <= now);
+            leasesSweptAt = now;
+        }
+    }
+
+    private void grant(String key, Address holder, long now) {
+        leases.computeIfAbsent(key, k -> new HashMap<>()).put(holder, now + LEASE_MILLIS);
+    }
+
+    /**
+     * Tell holders of unexpired leases on the key that their cached value is no longer valid. The writer is not
+     * told: it dropped the value from its cache before sending the write.
+     * @param confirm whether holders are expected to confirm, i.e. this node is the key's master
+     */
+    private void revoke(String key, Address writer, boolean confirm, long now) {
+        Map<Address, Long> holders = leases.remove(key);
+        if (holders == null) {
+            return;
+        }
+        final long id = ++revocationSeq;
+        for (Map.Entry<Address, Long> holder : holders.entrySet()) {
+            if (holder.getValue() > now && !holder.getKey().equals(writer)) {
+                send(holder.getKey(), new Message(Message.Type.INVALIDATE, id, address, key, null));
+                if (confirm) {
+                    revocations.computeIfAbsent(key, k -> new HashMap<>()).put(holder.getKey(), new Revocation(id, holder.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * The holder returned the INVALIDATE: it does not serve the revoked value any more.
+     */
+    private void confirm(Message message, long now) {
+        Map<Address, Revocation> holders = revocations.get(message.key);
+        Revocation revocation = (holders != null) ? holders.get(message.sender) : null;
+        if (revocation != null && revocation.seqNr == message.seqNr) {
+            holders.remove(message.sender);
+            if (holders.isEmpty()) {
+                revocations.remove(message.key);
+            }
+            resume(now);
+        }
+    }
+
+    /**
+     * @return time when all leases on the key that may still be served end, at most now if there are none
+     */
+    private long leased(String key, long now) {
+        long until = takeovers.getOrDefault(ring.token(key), now);
+        Map<Address, Revocation> holders = revocations.get(key);
+        if (holders != null) {
+            for (Revocation revocation : holders.values()) {
+                until = Math.max(until, revocation.expiry);
+            }
+        }
+        return until;
+    }
+
+    private long leased(List<String> keys, long now) {
+        long until = now;
+        for (String key : keys) {
+            until = Math.max(until, leased(key, now));
+        }
+        return until;
+    }
+
+    /**
+     * Note that the node is now the master of the token, if another node was: leases the previous master granted
+     * on keys of the token may be served until they expire.
+     */
+    private void takeover(int token, List<Address> previous, long now) {
+        if (previous != null && !previous.isEmpty() && !previous.get(0).equals(address)) {
+            takeovers.putIfAbsent(token, now + LEASE_MILLIS);
+        }
+    }
+
+    /**
+     * Revoke leases on keys this node is not the master of any more: the new master does not know about them.
+     */
+    private void handover(long now) {
+        List<String> keys = new ArrayList<>();
+        for (String key : leases.keySet()) {
+            if (!ring.pick(key, now).equals(address)) {
+                keys.add(key);
+            }
+        }
+        keys.forEach(key -> revoke(key, null, false, now));
+    }
+
+    /**
+     * Reply to replicated requests that were waiting for leases on their keys, if the leases are over.
+     */
+    private void resume(long now) {
+        if (!held.isEmpty()) {
+            List<Request> done = new ArrayList<>();
+            for (Iterator<Long> it = held.iterator(); it.hasNext(); ) {
+                long id = it.next();
+                Request req = pendingRequests.get(id);
+                if (req == null || leased(req.msg.key, now) <= now) {
+                    it.remove();
+                    if (req != null) {
+                        pendingRequests.remove(id);
+                        done.add(req);
+                    }
+                }
+            }
+            for (Request req : done) {
+                send(req.msg.sender, req.msg.ok(address));
+                release(req.msg, now);
+            }
+        }
+        if (!heldBatches.isEmpty()) {
+            List<BatchRequest> done = new ArrayList<>();
+            for (Iterator<Long> it = heldBatches.iterator(); it.hasNext(); ) {
+                long id = it.next();
+                BatchRequest req = pendingBatches.get(id);
+                if (req == null || leased(req.batch.keys, now) <= now) {
+                    it.remove();
+                    if (req != null) {
+                        pendingBatches.remove(id);
+                        done.add(req);
+                    }
+                }
+            }
+            for (BatchRequest req : done) {
+                send(req.batch.sender, req.batch.ok(address));
+                release(req.batch, now);
             }
         }
     }
@@ -81,13 +280,18 @@ public class KVNodeImpl implements KVNode {
         }
         if (pendingRequests.containsKey(message.seqNr)) {
             final Request req = pendingRequests.get(message.seqNr);
-            if (req.count + 1 >= minimumQuorum) {
+            if (req.count + 1 >= minimumQuorum && isWrite(req.msg) && leased(req.msg.key, now) > now) {
+                // Quorum reached, the reply waits for leases on the key to be revoked or to expire
+                logger.debug("[{}] Ack received, waiting for leases: {}", this.address, req);
+                pendingRequests.replace(message.seqNr, req.inc());
+                held.add(message.seqNr);
+            } else if (req.count + 1 >= minimumQuorum) {
                 // Quorum reached for the request
                 logger.debug("[{}] Ack received and quorum reached: {}", this.address, req);
-                send(req.msg.sender, req.msg.value(message.value).ok(address));
+                send(req.msg.sender, req.msg.value(message.value()).ok(address));
                 pendingRequests.remove(message.seqNr);
 
-                release(message.key, now);
+                release(req.msg, now);
             } else {
                 logger.debug("[{}] Ack received: {}", this.address, req);
                 pendingRequests.replace(message.seqNr, req.inc());
@@ -95,6 +299,27 @@ public class KVNodeImpl implements KVNode {
         }
     }
 
+    private void check(Batch batch, long now) {
+        final BatchRequest req = pendingBatches.get(batch.seqNr);
+        if (req == null) {
+            return;
+        }
+        if (req.count + 1 >= minimumQuorum && req.batch.type != Message.Type.READ && leased(req.batch.keys, now) > now) {
+            logger.debug("[{}] Ack received, waiting for leases: {}", this.address, req);
+            pendingBatches.replace(batch.seqNr, req.inc());
+            heldBatches.add(batch.seqNr);
+        } else if (req.count + 1 >= minimumQuorum) {
+            logger.debug("[{}] Ack received and quorum reached: {}", this.address, req);
+            send(req.batch.sender, req.batch.values(batch.values).ok(address));
+            pendingBatches.remove(batch.seqNr);
+
+            release(req.batch, now);
+        } else {
+            logger.debug("[{}] Ack received: {}", this.address, req);
+            pendingBatches.replace(batch.seqNr, req.inc());
+        }
+    }
+
     private void replicate(Message message, long now) {
         List<Address> targets = replication.pick(message.key, now);
         if (targets.size() < replicationFactor) {
@@ -104,44 +329,154 @@ public class KVNodeImpl implements KVNode {
         }
         if (targets.get(0).equals(address)) {
             // Replicate the key, you're the key's master
+            long deadline = now + timeoutMillis;
+            if (message.type == Message.Type.LEASE) {
+                grant(message.key, message.sender, now);
+            } else if (isWrite(message)) {
+                takeover(ring.token(message.key), placements.get(ring.token(message.key)), now);
+                revoke(message.key, message.sender, true, now);
+                deadline = Math.max(deadline, leased(message.key, now));
+            }
             apply(message, targets);
-            pend(message, now, seq);
+            final long id = ++seq;
+            pend(message, now, deadline, id);
 
             if (!isIdempotent(message)) {
                 block(message.key);
             }
 
-            Message replica = message.replica(address).accept(seq);
+            Message replica = message.replica(address).accept(id);
             for (int i=1; i<targets.size(); i++) {
                 logger.debug("[{}] Send replication to {}", this.address, targets.get(i));
                 send(targets.get(i), replica);
             }
-        } else {
+        } else if (message.type == Message.Type.REPLICATE) {
             // Forward the message to key's master node
             logger.debug("[{}] Forwarding request to {}", this.address, targets.get(0));
             send(targets.get(0), message);
+        } else {
+            // Redirect the client to key's master node, saving the hop through this node
+            logger.debug("[{}] Redirecting request to {}", this.address, targets.get(0));
+            send(message.sender, message.redirect(targets.get(0)));
+        }
+    }
+
+    /**
+     * Keys of a batch share the master, and so the replicas: the master applies the batch, replicates it
+     * as a whole and replies once the quorum acknowledged it. A node that is not the master of all the keys
+     * redirects the batch to their master, or, if the keys have different masters, each master's keys to it.
+     */
+    private void replicate(Batch batch, long now) {
+        if (batch.keys.isEmpty()) {
+            send(batch.sender, batch.ok(address));
+            return;
+        }
+        List<Address> targets = replication.pick(batch.keys.get(0), now);
+        if (targets.size() < replicationFactor) {
+            logger.error("[{}] Not enough copies in the group: {}", this.address, ring.ordered(now).size());
+            send(batch.sender, batch.fail(address));
+            return;
+        }
+        Map<Address, List<String>> masters = new LinkedHashMap<>();
+        for (String key : batch.keys) {
+            masters.computeIfAbsent(ring.pick(key, now), a -> new ArrayList<>()).add(key);
+        }
+        if (masters.size() > 1) {
+            masters.forEach((master, keys) -> {
+                logger.debug("[{}] Redirecting keys {} of batch to {}", this.address, keys, master);
+                send(batch.sender, batch.redirect(master, keys));
+            });
+            return;
+        } else if (!masters.containsKey(address)) {
+            Address master = masters.keySet().iterator().next();
+            logger.debug("[{}] Redirecting batch to {}", this.address, master);
+            send(batch.sender, batch.redirect(master));
+            return;
+        }
+
+        long deadline = now + timeoutMillis;
+        if (batch.type != Message.Type.READ) {
+            for (String key : batch.keys) {
+                takeover(ring.token(key), placements.get(ring.token(key)), now);
+                revoke(key, batch.sender, true, now);
+            }
+            deadline = Math.max(deadline, leased(batch.keys, now));
+        }
+        apply(batch, targets);
+        final long id = ++batchSeq;
+        pendingBatches.put(id, new BatchRequest(batch, now, 1));
+        batchTimeouts.schedule(deadline, id);
+        logger.debug("[{}] Pending batch: {}", this.address, batch);
+
+        if (batch.type != Message.Type.READ) {
+            batch.keys.forEach(this::block);
+        }
+
+        Batch replica = batch.replica(address).accept(id);
+        for (int i=1; i<targets.size(); i++) {
+            send(targets.get(i), replica);
+        }
+    }
+
+    /**
+     * Reads, creates and deletes go to the store at once for all the keys, updates (that only replace values
+     * already there) key by key.
+     * @return values after applying each key's operation
+     */
+    private List<String> apply(Batch batch, List<Address> replicas) {
+        switch (batch.type) {
+            case READ:
+                Map<String, String> found = kv.multiGet(batch.keys);
+                List<String> values = new ArrayList<>(batch.keys.size());
+                for (String key : batch.keys) {
+                    values.add(found.get(key));
+                }
+                logger.debug("[{}] read made keys={}", this.address, batch.keys);
+                return values;
+            case CREATE:
+                Map<String, String> entries = new LinkedHashMap<>();
+                for (int i=0; i<batch.keys.size(); i++) {
+                    entries.put(batch.keys.get(i), batch.values.get(i));
+                }
+                kv.multiPut(entries);
+                entries.keySet().forEach(key -> track(key, replicas));
+                logger.debug("[{}] create saved keys={}", this.address, entries.keySet());
+                return batch.values;
+            case DELETE:
+                kv.multiDelete(batch.keys);
+                batch.keys.forEach(this::forget);
+                logger.debug("[{}] delete saved keys={}", this.address, batch.keys);
+                return batch.values;
+            default:
+                List<String> results = new ArrayList<>(batch.keys.size());
+                for (int i=0; i<batch.keys.size(); i++) {
+                    Message message = new Message(batch.type, batch.seqNr, batch.sender, batch.keys.get(i), batch.values.get(i));
+                    results.add(apply(message, replicas).value());
+                }
+                return results;
         }
     }
 
     private Message apply(Message message, List<Address> replicas) {
         switch (message.type) {
             case READ:
+            case LEASE:
                 String val = kv.read(message.key);
                 logger.debug("[{}] read made key={} value={}", this.address, message.key, val);
                 return message.value(val);
             case REPLICATE:
             case CREATE:
-                kv.create(message.key, message.value);
-                copies.put(message.key, replicas);
-                logger.debug("[{}] create saved key={} value={}", this.address, message.key, message.value);
+                kv.create(message.key, message.value());
+                track(message.key, replicas);
+                logger.debug("[{}] create saved key={} value={}", this.address, message.key, message.value());
                 return message.ack();
             case UPDATE:
-                kv.update(message.key, message.value);
-                logger.debug("[{}] update saved key={} value={}", this.address, message.key, message.value);
+                kv.update(message.key, message.value());
+                logger.debug("[{}] update saved key={} value={}", this.address, message.key, message.value());
                 return message.ack();
             case DELETE:
                 kv.delete(message.key);
-                copies.remove(message.key);
+                forget(message.key);
                 logger.debug("[{}] delete saved key={}", this.address, message.key);
                 return message.ack();
             default:
@@ -149,8 +484,40 @@ public class KVNodeImpl implements KVNode {
         }
     }
 
+    /**
+     * Note that the node has a copy of the key, for re-replication on membership changes.
+     */
+    private void track(String key, List<Address> replicas) {
+        copies.put(key, replicas);
+        tokens.computeIfAbsent(ring.token(key), t -> new HashSet<>()).add(key);
+        placements.putIfAbsent(ring.token(key), replicas);
+    }
+
+    private void forget(String key) {
+        if (copies.remove(key) != null) {
+            untrack(key);
+        }
+    }
+
+    private void untrack(String key) {
+        int token = ring.token(key);
+        Set<String> keys = tokens.get(token);
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            tokens.remove(token);
+            placements.remove(token);
+        }
+    }
+
     private boolean isIdempotent(Message message) {
-        return message.type == Message.Type.READ;
+        return message.type == Message.Type.READ || message.type == Message.Type.LEASE;
+    }
+
+    /**
+     * @return whether the message changes the value clients read, as opposed to a read or a re-replication
+     */
+    private boolean isWrite(Message message) {
+        return message.type == Message.Type.CREATE || message.type == Message.Type.UPDATE || message.type == Message.Type.DELETE;
     }
 
     private void block(String key) {
@@ -162,20 +529,73 @@ public class KVNodeImpl implements KVNode {
         logger.debug("Message buffered: {}", message);
     }
 
+    private void buffer(String key, Batch batch) {
+        bufferedRequests.get(key).offer(batch);
+        logger.debug("Batch buffered: {}", batch);
+    }
+
+    /**
+     * Unblock the key of a write once it is replicated (or timed out). Reads never block keys, a write may be
+     * blocking the key of a read meanwhile.
+     */
+    private void release(Message message, long now) {
+        if (!isIdempotent(message)) {
+            release(message.key, now);
+        }
+    }
+
+    private void release(Batch batch, long now) {
+        if (batch.type != Message.Type.READ) {
+            batch.keys.forEach(key -> release(key, now));
+        }
+    }
+
+    /**
+     * Unblock the key and submit requests buffered behind it again, in order: a write among them blocks the key
+     * again for the ones after it, and a batch waits behind any other of its keys still blocked.
+     */
     private void release(String key, long now) {
-        if (bufferedRequests.containsKey(key)) {
-            final ConcurrentLinkedQueue<Message> q = bufferedRequests.get(key);
-            while (!q.isEmpty()) {
-                final Message m = q.poll();
-                process(m, now);
+        final ConcurrentLinkedQueue<Object> q = bufferedRequests.remove(key);
+        if (q == null) {
+            return;
+        }
+        Object m;
+        while ((m = q.poll()) != null) {
+            if (m instanceof Batch) submit((Batch) m, now);
+            else submit((Message) m, now);
+        }
+    }
+
+    private void submit(Message message, long now) {
+        if (bufferedRequests.containsKey(message.key) && !message.replica && message.type != Message.Type.INVALIDATE) {
+            buffer(message);
+        } else {
+            process(message, now);
+        }
+    }
+
+    private void submit(Batch batch, long now) {
+        String blocked = null;
+        if (!batch.replica) {
+            for (String key : batch.keys) {
+                if (bufferedRequests.containsKey(key)) {
+                    blocked = key;
+                    break;
+                }
             }
-            bufferedRequests.remove(key);
+        }
+        if (blocked != null) {
+            buffer(blocked, batch);
+        } else {
+            process(batch, now);
         }
     }
 
     private void process(Message message, long now) {
         if (message.type == Message.Type.ACK) {
             check(message, now);
+        } else if (message.type == Message.Type.INVALIDATE) {
+            confirm(message, now);
         } else {
             if (message.replica) {
                 Message reply = apply(message, replication.pick(message.key, now));
@@ -186,22 +606,49 @@ public class KVNodeImpl implements KVNode {
         }
     }
 
-    private void rebalance(long now) {
-        Set<Address> failed = ring.failed(now).stream()
-                .map(m -> m.address)
-                .collect(Collectors.toSet());
+    private void process(Batch batch, long now) {
+        if (batch.type == Message.Type.ACK) {
+            check(batch, now);
+        } else if (batch.replica) {
+            List<String> values = apply(batch, replication.pick(batch.keys.get(0), now));
+            send(batch.sender, batch.values(values));
+        } else {
+            replicate(batch, now);
+        }
+    }
 
-        if (failed.isEmpty()) {
-            return;
+    /**
+     * Re-replicate keys whose replicas changed with the membership. Replicas are computed once per token
+     * (keys of a token share them), and only when the set of members changed; keys of the tokens whose replicas
+     * changed are then checked a few per cycle.
+     */
+    private void rebalance(long now) {
+        Set<Address> current = new HashSet<>(ring.ordered(now));
+        if (!current.equals(members)) {
+            members = current;
+            for (Map.Entry<Integer, Set<String>> e : tokens.entrySet()) {
+                List<Address> targets = replication.pick(e.getValue().iterator().next(), now);
+                List<Address> previous = placements.put(e.getKey(), targets);
+                if (!targets.equals(previous)) {
+                    rebalancing.addAll(e.getValue());
+                    if (!targets.isEmpty() && targets.get(0).equals(address)) {
+                        takeover(e.getKey(), previous, now);
+                    }
+                }
+            }
+            handover(now);
         }
 
-        for (Map.Entry<String, List<Address>> e : copies.entrySet()) {
-            final String key = e.getKey();
+        for (int i=0; i<REBALANCE_KEYS_PER_CYCLE && !rebalancing.isEmpty(); i++) {
+            final String key = rebalancing.poll();
+            if (!copies.containsKey(key)) {
+                continue; // deleted since
+            }
 
-            Set<Address> stored = new HashSet<>(e.getValue());
-            List<Address> targets = replication.pick(key, now);
+            Set<Address> stored = new HashSet<>(copies.get(key));
+            List<Address> targets = placements.get(ring.token(key));
 
-            if (! stored.containsAll(targets)) {
+            if (targets != null && !stored.containsAll(targets)) {
                 seq += 1;
                 Message message = new Message(Message.Type.REPLICATE, seq, address, key, kv.read(key));
                 replicate(message, now);
@@ -212,14 +659,24 @@ public class KVNodeImpl implements KVNode {
     @Override
     synchronized public void handle(Message message) {
         logger.debug("[{}] Received: {}", address, message);
-        final long now = tick();
+        final long now = clock.get();
+        cleanup(now);
+        submit(message, now);
+    }
+
+    @Override
+    synchronized public void cycle() {
+        final long now = clock.get();
         cleanup(now);
         rebalance(now);
-        if (bufferedRequests.containsKey(message.key) && !message.replica) {
-            buffer(message);
-        } else {
-            process(message, now);
-        }
+    }
+
+    @Override
+    synchronized public void handle(Batch batch) {
+        logger.debug("[{}] Received: {}", address, batch);
+        final long now = clock.get();
+        cleanup(now);
+        submit(batch, now);
     }
 
     private static class Request {
@@ -247,4 +704,39 @@ public class KVNodeImpl implements KVNode {
         }
     }
 
+    private static class Revocation {
+        final long seqNr; // of the INVALIDATE, returned by the holder to confirm
+        final long expiry; // of the lease revoked
+
+        private Revocation(long seqNr, long expiry) {
+            this.seqNr = seqNr;
+            this.expiry = expiry;
+        }
+    }
+
+    private static class BatchRequest {
+        final Batch batch;
+        final long ts;
+        final int count;
+
+        private BatchRequest(Batch batch, long ts, int count) {
+            this.batch = batch;
+            this.ts = ts;
+            this.count = count;
+        }
+
+        BatchRequest inc() {
+            return new BatchRequest(batch, ts, count + 1);
+        }
+
+        @Override
+        public String toString() {
+            return "BatchRequest{" +
+                    "batch=" + batch +
+                    ", ts=" + ts +
+                    ", count=" + count +
+                    '}';
+        }
+    }
+
 }
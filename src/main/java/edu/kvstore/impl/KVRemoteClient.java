@@ -4,15 +4,38 @@ import edu.common.api.Address;
 import edu.common.api.Network;
 import edu.common.api.Payload;
 import edu.common.impl.RemoteAddress;
+import edu.common.impl.ShmNetwork;
+import edu.common.impl.TcpNetwork;
 import edu.common.impl.UdpNetwork;
+import edu.common.impl.Wire;
+import edu.kvstore.api.Batch;
 import edu.kvstore.api.KVStore;
 import edu.kvstore.api.Message;
+import edu.kvstore.api.Ring;
+import edu.membership.api.Member;
+import edu.membership.impl.GossipMembership;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
+/**
+ * Client of the key-value nodes. Requests are pipelined: many may be in flight at once, up to the window size,
+ * each reply is matched to its request by seqNr, and a request not replied to within the timeout resolves
+ * as failed. Synchronous operations wait for their asynchronous counterparts.
+ * The client keeps a view of the ring, the member list it fetches from a node every now and then, and sends
+ * each request straight to the key's master. A node that is not the master redirects the request to it,
+ * and the view is fetched again from the master.
+ * Optionally, values read are cached under leases granted by the masters, see {@link LeaseCache}.
+ */
 public class KVRemoteClient implements KVStore<String, String> {
     private static final Logger logger = LogManager.getLogger(KVRemoteClient.class);
 
@@ -20,25 +43,75 @@ public class KVRemoteClient implements KVStore<String, String> {
     private final List<Address> remote;
     private final Network network;
     private final Supplier<Long> clock;
-    private long seq = 0L;
+    private final long timeoutMillis;
+    private final AtomicLong seq = new AtomicLong(0L);
 
     private final Network.Listener listener;
+    private final Semaphore window;
+    private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+    // requests in the order of sending, which is the order of their deadlines as all have the same timeout
+    private final ConcurrentLinkedQueue<Pending> deadlines = new ConcurrentLinkedQueue<>();
+    private final Thread receiver;
+    private volatile boolean isRunning = true;
+
+    private final LeaseCache cache; // null without caching
+
+    private volatile Ring<String> view = null; // until the member list is fetched, requests go round robin
+    private long refreshAt = 0L; // owned by the receiver thread
+    private long refreshes = 0L; // owned by the receiver thread
 
     private static final long TIMEOUT_MILLIS = 300;
+    private static final int WINDOW_SIZE = 1024;
+    private static final long REFRESH_MILLIS = 1000;
+    private static final int MAX_REDIRECTS = 3;
+    private static final int MAX_BATCH_KEYS = 128;
+    private static final int MAX_BATCH_BYTES = 32 * 1024; // well within a payload of UdpNetwork (64 KB)
+    private static final int KEY_OVERHEAD = 11; // lengths of a key and its value, value presence flag
 
     public KVRemoteClient(Address self, List<Address> remote, Network network, Supplier<Long> clock) {
+        this(self, remote, network, clock, TIMEOUT_MILLIS, WINDOW_SIZE);
+    }
+
+    /**
+     * @param timeoutMillis time to wait for a reply to a request
+     * @param windowSize maximum number of requests in flight, sending more waits for replies (or timeouts)
+     */
+    public KVRemoteClient(Address self, List<Address> remote, Network network, Supplier<Long> clock, long timeoutMillis, int windowSize) {
+        this(self, remote, network, clock, timeoutMillis, windowSize, 0);
+    }
+
+    /**
+     * @param cacheSize maximum number of values read to cache under leases, 0 to read every value from the nodes
+     */
+    public KVRemoteClient(Address self, List<Address> remote, Network network, Supplier<Long> clock, long timeoutMillis, int windowSize,
+                          int cacheSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
         this.self = self;
         this.remote = remote;
         this.network = network;
         this.clock = clock;
+        this.timeoutMillis = timeoutMillis;
+        this.window = new Semaphore(windowSize);
+        this.cache = (cacheSize > 0) ? new LeaseCache(cacheSize, timeoutMillis) : null;
         this.listener = network.listen(self);
-    }
-
-    private void inc() {
-        seq += 1;
+        this.receiver = new Thread(this::run, "kv-client-" + self);
+        this.receiver.setDaemon(true);
+        this.receiver.start();
     }
 
     public void close() {
+        isRunning = false;
+        receiver.interrupt();
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Long seqNr : pending.keySet()) {
+            complete(seqNr, null);
+        }
         try {
             listener.close();
         } catch (Exception e) {
@@ -46,25 +119,412 @@ public class KVRemoteClient implements KVStore<String, String> {
         }
     }
 
-    private void send(Message.Type type, String key, String val) {
-        inc();
-        Message msg = new Message(type, seq, self, key, val);
-        Address address = remote.get((int) (seq % remote.size()));
-        network.send(address, Payload.of(msg));
-        logger.debug("Sent {}", msg);
+    /**
+     * @return number of requests sent and not replied to (nor timed out) yet
+     */
+    public int inFlight() {
+        return pending.size();
+    }
+
+    /**
+     * @return cache of values read, with its hit rate, revocation and staleness metrics; null without caching
+     */
+    public LeaseCache cache() {
+        return cache;
+    }
+
+    private static boolean isWrite(Message.Type type) {
+        return type == Message.Type.CREATE || type == Message.Type.UPDATE || type == Message.Type.DELETE;
     }
 
-    private Message recv() {
+    private boolean acquire() {
+        try {
+            window.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Send the request once there is room in the window.
+     * @return future of the reply, completed with null if there was no reply in time
+     */
+    private CompletableFuture<Message> send(Message.Type type, String key, String val) {
+        if (!acquire()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final long seqNr = seq.incrementAndGet();
         final long now = clock.get();
-        while (clock.get() - now < TIMEOUT_MILLIS) {
-            Payload payload = listener.queue().poll();
-            if (payload != null) {
-                logger.info("Received in {} ms: {}", System.currentTimeMillis() - now, payload);
-                return payload.keyval;
+        if (cache != null && isWrite(type)) {
+            cache.invalidate(key, now);
+        }
+        Ring<String> ring = view;
+        Address address = (ring != null) ? ring.pick(key, now) : null;
+        Payload payload = Payload.of(new Message(type, seqNr, self, key, val));
+        return send(address, seqNr, payload, now).thenApply(Message.class::cast);
+    }
+
+    /**
+     * Send the batch once there is room in the window, it takes as much room as a single request.
+     * @return future of the reply, completed with null if there was no reply in time
+     */
+    private CompletableFuture<Batch> send(Address address, Message.Type type, List<String> keys, List<String> values) {
+        if (!acquire()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final long seqNr = seq.incrementAndGet();
+        Payload payload = Payload.of(new Batch(type, seqNr, self, keys, values, false));
+        return send(address, seqNr, payload, clock.get()).thenApply(Batch.class::cast);
+    }
+
+    /**
+     * @param address target node, or null to pick one of the remote nodes
+     */
+    private CompletableFuture<Object> send(Address address, long seqNr, Payload payload, long now) {
+        final Pending request = new Pending(seqNr, payload, now + timeoutMillis);
+        pending.put(seqNr, request);
+        deadlines.offer(request);
+        send((address != null) ? address : remote.get((int) (seqNr % remote.size())), request);
+        return request.future;
+    }
+
+    private void send(Address address, Pending request) {
+        if (network.send(address, request.payload)) {
+            logger.debug("Sent {} to {}", request.payload, address);
+        } else {
+            complete(request.seqNr, null);
+        }
+    }
+
+    /**
+     * Send the request again, to the master the node it was sent to points at.
+     */
+    private void redirect(long seqNr, Address master) {
+        Pending request = pending.get(seqNr);
+        if (request == null) {
+            return;
+        }
+        logger.debug("Redirected to {}: {}", master, request.payload);
+        if (++request.redirects > MAX_REDIRECTS) {
+            complete(seqNr, null);
+            return;
+        }
+        send(master, request);
+        // the view is stale, ask the master for its member list
+        refresh(master, clock.get());
+    }
+
+    /**
+     * Send the keys of the batch the node names the master of to that master, as a batch of their own: a node
+     * redirects a batch whose keys have different masters per master. The reply to the batch is gathered from
+     * the replies to its parts.
+     */
+    private void redirect(long seqNr, Address master, List<String> keys) {
+        Pending request = pending.get(seqNr);
+        if (request == null) {
+            return;
+        }
+        logger.debug("Redirected keys {} to {}: {}", keys, master, request.payload);
+        if (request.redirects + 1 > MAX_REDIRECTS) {
+            complete(seqNr, null);
+            return;
+        }
+        Batch batch = (Batch) request.payload.message;
+        int indices[] = new int[keys.size()];
+        List<String> values = new ArrayList<>(keys.size());
+        synchronized (request) {
+            if (request.values == null) {
+                request.values = batch.values.toArray(new String[0]);
+                request.remaining = batch.keys.size();
+                request.unassigned = new HashMap<>();
+                for (int i=0; i<batch.keys.size(); i++) {
+                    request.unassigned.computeIfAbsent(batch.keys.get(i), k -> new ArrayDeque<>()).add(i);
+                }
+            }
+            for (int i=0; i<keys.size(); i++) {
+                ArrayDeque<Integer> unassigned = request.unassigned.get(keys.get(i));
+                if (unassigned == null || unassigned.isEmpty()) {
+                    indices = null; // not a key of the batch, or sent in a part already
+                    break;
+                }
+                indices[i] = unassigned.poll();
+                values.add(batch.values.get(indices[i]));
+            }
+        }
+        if (indices == null) {
+            complete(seqNr, null);
+            return;
+        }
+
+        final long partSeqNr = seq.incrementAndGet();
+        Payload payload = Payload.of(new Batch(batch.type, partSeqNr, self, keys, values, false));
+        Pending part = new Pending(partSeqNr, payload, clock.get() + timeoutMillis, request, indices);
+        part.redirects = request.redirects + 1;
+        pending.put(partSeqNr, part);
+        deadlines.offer(part);
+        send(master, part);
+        refresh(master, clock.get());
+    }
+
+    /**
+     * Fill the reply to a part of a batch into the reply to the batch, which fails if the part does.
+     */
+    private void gather(Pending part, Object reply) {
+        final Pending request = part.parent;
+        if (!isOk((Batch) reply)) {
+            complete(request.seqNr, reply);
+            return;
+        }
+        Batch batch = (Batch) request.payload.message;
+        Batch done = null;
+        synchronized (request) {
+            for (int i=0; i<part.indices.length; i++) {
+                request.values[part.indices[i]] = ((Batch) reply).values.get(i);
+            }
+            request.remaining -= part.indices.length;
+            if (request.remaining == 0) {
+                done = new Batch(Message.Type.OK, request.seqNr, ((Batch) reply).sender, batch.keys, Arrays.asList(request.values), false);
+            }
+        }
+        if (done != null) {
+            complete(request.seqNr, done);
+        }
+    }
+
+    /**
+     * Send keys in batches, a batch per master of the keys in the view (a batch per key until the view is
+     * fetched), and gather results of all keys. A master's keys are split into batches of at most MAX_BATCH_KEYS
+     * keys and MAX_BATCH_BYTES bytes of keys and values, so that a batch fits into a payload; values of reads
+     * are only known from the reply.
+     * @param result result for the key at the index in the reply (null if the batch failed), left out if null
+     */
+    private <T> CompletableFuture<Map<String, T>> send(Message.Type type, List<String> keys, List<String> values,
+                                                       BiFunction<Batch, Integer, T> result) {
+        final long now = clock.get();
+        if (cache != null && isWrite(type)) {
+            keys.forEach(key -> cache.invalidate(key, now));
+        }
+        final Ring<String> ring = view;
+        List<Address> targets = new ArrayList<>();
+        List<List<Integer>> chunks = new ArrayList<>(); // indices of keys per batch
+        if (ring != null) {
+            Map<Address, List<Integer>> groups = new LinkedHashMap<>();
+            for (int i=0; i<keys.size(); i++) {
+                groups.computeIfAbsent(ring.pick(keys.get(i), now), a -> new ArrayList<>()).add(i);
+            }
+            groups.forEach((master, group) -> {
+                int from = 0;
+                int bytes = 0;
+                for (int i=0; i<group.size(); i++) {
+                    int size = size(keys.get(group.get(i)), values.get(group.get(i)));
+                    if (i > from && (i - from == MAX_BATCH_KEYS || bytes + size > MAX_BATCH_BYTES)) {
+                        targets.add(master);
+                        chunks.add(group.subList(from, i));
+                        from = i;
+                        bytes = 0;
+                    }
+                    bytes += size;
+                }
+                targets.add(master);
+                chunks.add(group.subList(from, group.size()));
+            });
+        } else {
+            for (int i=0; i<keys.size(); i++) {
+                targets.add(null);
+                chunks.add(Collections.singletonList(i));
+            }
+        }
+
+        List<CompletableFuture<Map<String, T>>> futures = new ArrayList<>(chunks.size());
+        for (int c=0; c<chunks.size(); c++) {
+            final List<String> k = new ArrayList<>(chunks.get(c).size());
+            final List<String> v = new ArrayList<>(chunks.get(c).size());
+            for (int i : chunks.get(c)) {
+                k.add(keys.get(i));
+                v.add(values.get(i));
+            }
+            futures.add(send(targets.get(c), type, k, v).thenApply(reply -> {
+                Map<String, T> map = new HashMap<>();
+                for (int i=0; i<k.size(); i++) {
+                    T r = result.apply(isOk(reply) ? reply : null, i);
+                    if (r != null) {
+                        map.put(k.get(i), r);
+                    }
+                }
+                return map;
+            }));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            Map<String, T> map = new HashMap<>();
+            futures.forEach(f -> map.putAll(f.join()));
+            return map;
+        });
+    }
+
+    /**
+     * @return encoded size of the key and value in a batch
+     */
+    private static int size(String key, String value) {
+        return KEY_OVERHEAD + Wire.utf8Length(key) + ((value != null) ? Wire.utf8Length(value) : 0);
+    }
+
+    private void refresh(Address target, long now) {
+        refreshAt = now + REFRESH_MILLIS;
+        Member member = new Member(self, now, 0L);
+        network.send(target, Payload.of(new edu.membership.api.Message(
+                edu.membership.api.Message.Type.LIST, member, Collections.emptyList())));
+    }
+
+    /**
+     * Replace the view with the member list as the node sees it; the view does no failure detection of its own.
+     */
+    private void update(List<Member> members, long now) {
+        if (members.isEmpty()) {
+            return;
+        }
+        Ring<String> ring = new HashRing(Byte.MAX_VALUE, new GossipMembership(self, Long.MAX_VALUE, 0L));
+        for (Member member : members) {
+            ring.add(member, now);
+        }
+        view = ring;
+    }
+
+    /**
+     * @return addresses in the ring as last fetched, empty until it is fetched
+     */
+    public List<Address> view() {
+        Ring<String> ring = view;
+        return (ring != null) ? ring.ordered(clock.get()) : Collections.emptyList();
+    }
+
+    private void complete(long seqNr, Object reply) {
+        Pending request = pending.remove(seqNr);
+        if (request != null) {
+            request.future.complete(reply);
+            if (request.parent != null) {
+                gather(request, reply);
+            } else {
+                window.release();
+            }
+        }
+    }
+
+    /**
+     * Match replies to pending requests and time out requests past their deadline, on the receiver thread.
+     */
+    private void run() {
+        while (isRunning) {
+            final long now = clock.get();
+            Pending head;
+            while ((head = deadlines.peek()) != null && (head.future.isDone() || head.deadline <= now)) {
+                deadlines.poll();
+                if (!head.future.isDone()) {
+                    logger.debug("Timeout for seqNr={}", head.seqNr);
+                    complete(head.seqNr, null);
+                }
+            }
+            if (now >= refreshAt) {
+                refresh(remote.get((int) (refreshes++ % remote.size())), now);
+            }
+            // a request sent while waiting has its deadline after the wait is over
+            long wait = Math.min((head != null) ? head.deadline - now : timeoutMillis, Math.max(1L, refreshAt - now));
+            try {
+                Payload payload = listener.poll(wait, TimeUnit.MILLISECONDS);
+                if (payload == null) {
+                    continue;
+                }
+                logger.debug("Received: {}", payload);
+                if (payload.keyval != null && payload.keyval.type == Message.Type.INVALIDATE) {
+                    if (cache != null) cache.revoke(payload.keyval.key, clock.get());
+                    // return it to confirm, the master holds the write until then (or until the lease expires)
+                    Message revoked = payload.keyval;
+                    network.send(revoked.sender, Payload.of(new Message(Message.Type.INVALIDATE, revoked.seqNr, self, revoked.key, null)));
+                } else if (payload.keyval != null && payload.keyval.type == Message.Type.REDIRECT) {
+                    redirect(payload.keyval.seqNr, payload.keyval.sender);
+                } else if (payload.keyval != null) {
+                    complete(payload.keyval.seqNr, payload.keyval);
+                } else if (payload.message instanceof Batch) {
+                    Batch batch = (Batch) payload.message;
+                    if (batch.type == Message.Type.REDIRECT && batch.keys.isEmpty()) redirect(batch.seqNr, batch.sender);
+                    else if (batch.type == Message.Type.REDIRECT) redirect(batch.seqNr, batch.sender, batch.keys);
+                    else complete(batch.seqNr, batch);
+                } else if (payload.member != null && payload.member.type == edu.membership.api.Message.Type.MEMBER_LIST) {
+                    update(payload.member.members, clock.get());
+                }
+            } catch (InterruptedException e) {
+                /* closed */
             }
         }
-        logger.debug("Received: null in {} ms", System.currentTimeMillis() - now);
-        return null;
+    }
+
+    private static boolean isOk(Message msg) {
+        return (msg != null) && (msg.type == Message.Type.OK);
+    }
+
+    private static boolean isOk(Batch batch) {
+        return (batch != null) && (batch.type == Message.Type.OK);
+    }
+
+    public CompletableFuture<Boolean> createAsync(String key, String value) {
+        return send(Message.Type.CREATE, key, value).thenApply(KVRemoteClient::isOk);
+    }
+
+    /**
+     * With caching, the value is served from the cache while under a lease, otherwise read with a lease.
+     * @return future of the value, completed with null if there is no value or the read failed
+     */
+    public CompletableFuture<String> readAsync(String key) {
+        if (cache == null) {
+            return send(Message.Type.READ, key, null).thenApply(msg -> isOk(msg) ? msg.value() : null);
+        }
+        final long now = clock.get();
+        String cached = cache.get(key, now);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return send(Message.Type.LEASE, key, null).thenApply(msg -> {
+            String value = isOk(msg) ? msg.value() : null;
+            if (value != null) {
+                // the lease is granted once the request reaches the master, so it lasts at least that long
+                cache.put(key, value, now, now + KVNodeImpl.LEASE_MILLIS);
+            }
+            return value;
+        });
+    }
+
+    public CompletableFuture<Boolean> updateAsync(String key, String value) {
+        return send(Message.Type.UPDATE, key, value).thenApply(KVRemoteClient::isOk);
+    }
+
+    public CompletableFuture<Boolean> deleteAsync(String key) {
+        return send(Message.Type.DELETE, key, null).thenApply(KVRemoteClient::isOk);
+    }
+
+    /**
+     * @return future of the values of the keys that have one, keys of failed batches are left out too
+     */
+    public CompletableFuture<Map<String, String>> multiGetAsync(Collection<String> keys) {
+        List<String> list = new ArrayList<>(keys);
+        return send(Message.Type.READ, list, Collections.nCopies(list.size(), null),
+                (reply, i) -> (reply != null) ? reply.values.get(i) : null);
+    }
+
+    public CompletableFuture<Map<String, Boolean>> multiPutAsync(Map<String, String> entries) {
+        List<String> keys = new ArrayList<>(entries.size());
+        List<String> values = new ArrayList<>(entries.size());
+        entries.forEach((k, v) -> {
+            keys.add(k);
+            values.add(v);
+        });
+        return send(Message.Type.CREATE, keys, values, (reply, i) -> reply != null);
+    }
+
+    public CompletableFuture<Map<String, Boolean>> multiDeleteAsync(Collection<String> keys) {
+        List<String> list = new ArrayList<>(keys);
+        return send(Message.Type.DELETE, list, Collections.nCopies(list.size(), null), (reply, i) -> reply != null);
     }
 
     @Override
@@ -74,34 +534,73 @@ public class KVRemoteClient implements KVStore<String, String> {
 
     @Override
     public boolean create(String key, String value) {
-        send(Message.Type.CREATE, key, value);
-        Message msg = recv();
-        return (msg != null) && (msg.type == Message.Type.OK);
+        return createAsync(key, value).join();
     }
 
     @Override
     public String read(String key) {
-        send(Message.Type.READ, key, null);
-        Message msg = recv();
-        if ((msg != null) && (msg.type == Message.Type.OK)) {
-            return msg.value;
-        } else {
-            return null;
-        }
+        return readAsync(key).join();
     }
 
     @Override
     public boolean update(String key, String value) {
-        send(Message.Type.UPDATE, key, value);
-        Message msg = recv();
-        return (msg != null) && (msg.type == Message.Type.OK);
+        return updateAsync(key, value).join();
     }
 
     @Override
     public boolean delete(String key) {
-        send(Message.Type.DELETE, key, null);
-        Message msg = recv();
-        return (msg != null) && (msg.type == Message.Type.OK);
+        return deleteAsync(key).join();
+    }
+
+    @Override
+    public Map<String, String> multiGet(Collection<String> keys) {
+        return multiGetAsync(keys).join();
+    }
+
+    @Override
+    public Map<String, Boolean> multiPut(Map<String, String> entries) {
+        return multiPutAsync(entries).join();
+    }
+
+    @Override
+    public Map<String, Boolean> multiDelete(Collection<String> keys) {
+        return multiDeleteAsync(keys).join();
+    }
+
+    private static class Pending {
+        final long seqNr;
+        final Payload payload;
+        final long deadline;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        int redirects = 0; // owned by the receiver thread
+
+        // a part of a batch sent to another master after a redirect, it takes no room in the window
+        final Pending parent;
+        final int indices[]; // of the part's keys in the parent's batch
+
+        // a batch split into parts after a redirect, guarded by the batch's request
+        String values[]; // gathered from replies to the parts
+        int remaining; // number of keys not replied to yet
+        Map<String, ArrayDeque<Integer>> unassigned; // indices of keys not sent in any part yet
+
+        Pending(long seqNr, Payload payload, long deadline) {
+            this(seqNr, payload, deadline, null, null);
+        }
+
+        Pending(long seqNr, Payload payload, long deadline, Pending parent, int indices[]) {
+            this.seqNr = seqNr;
+            this.payload = payload;
+            this.deadline = deadline;
+            this.parent = parent;
+            this.indices = indices;
+        }
+    }
+
+    private static Network makeNetwork(String network) {
+        // select transport with -Dnetwork=tcp or -Dnetwork=shm, UDP is the default
+        if ("tcp".equals(network)) return new TcpNetwork();
+        else if ("shm".equals(network)) return new ShmNetwork();
+        else return new UdpNetwork();
     }
 
     public static void main(String args[]) throws InterruptedException {
@@ -112,7 +611,8 @@ public class KVRemoteClient implements KVStore<String, String> {
                         new RemoteAddress("127.0.0.1", 10020),
                         new RemoteAddress("127.0.0.1", 10030)
                 ),
-                new UdpNetwork(), System::currentTimeMillis);
+                makeNetwork(System.getProperty("network")),
+                System::currentTimeMillis);
 
         for (int i=0; i<1000; i++) {
             String key = UUID.randomUUID().toString();
@@ -138,6 +638,17 @@ public class KVRemoteClient implements KVStore<String, String> {
             }
         }
 
+        // pipelined: all creates in flight at once, limited by the window
+        final int n = 10000;
+        final long start = System.currentTimeMillis();
+        List<CompletableFuture<Boolean>> created = new ArrayList<>(n);
+        for (int i=0; i<n; i++) {
+            created.add(client.createAsync(UUID.randomUUID().toString(), "0"));
+        }
+        long ok = created.stream().filter(CompletableFuture::join).count();
+        System.out.println();
+        System.out.println("created " + ok + " of " + n + " in " + (System.currentTimeMillis() - start) + " ms");
+
         client.close();
     }
 }
@@ -0,0 +1,228 @@
+package edu.kvstore.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of values read under leases: an entry is served until its lease expires or the key's master
+ * revokes it. Entries are kept in LRU order; when the cache is full, a new entry only replaces the least recently
+ * used one if its key was asked for more often, by an approximate count of recent reads (TinyLFU admission),
+ * so that a burst of one-off reads does not flush the hot keys.
+ */
+public class LeaseCache {
+    private static final int MAX_COUNT = 15;
+    private static final int MIN_COUNTERS = 256;
+
+    private final int capacity;
+    private final long retainMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> revoked = new HashMap<>(); // time of the last revocation by key
+    private long purgedAt = 0L;
+
+    // count-min sketch of read frequencies, halved every `sampleSize` reads to follow what is hot now
+    private final byte counters[];
+    private final int mask;
+    private final int sampleSize;
+    private int samples = 0;
+
+    private long hits = 0L;
+    private long misses = 0L;
+    private long revocations = 0L;
+    private long evictions = 0L;
+    private long rejections = 0L;
+    private long totalAgeMillis = 0L;
+    private long maxAgeMillis = 0L;
+
+    /**
+     * @param capacity maximum number of entries
+     * @param retainMillis how long to remember a revocation: longer than a read may take, so that a value
+     *                     read before the revocation is not cached after it
+     */
+    public LeaseCache(int capacity, long retainMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.retainMillis = retainMillis;
+        int size = Integer.highestOneBit(Math.max(MIN_COUNTERS, capacity * 4) - 1) << 1;
+        this.counters = new byte[size];
+        this.mask = size - 1;
+        this.sampleSize = 10 * Math.max(capacity, MIN_COUNTERS / 4);
+    }
+
+    /**
+     * @return cached value of the key, or null if there is none under a valid lease
+     */
+    public synchronized String get(String key, long now) {
+        increment(key);
+        Entry entry = entries.get(key);
+        if (entry != null && now < entry.expiresAt) {
+            long age = now - entry.readAt;
+            hits += 1;
+            totalAgeMillis += age;
+            maxAgeMillis = Math.max(maxAgeMillis, age);
+            return entry.value;
+        }
+        if (entry != null) {
+            entries.remove(key);
+        }
+        misses += 1;
+        return null;
+    }
+
+    /**
+     * Cache the value read under a lease, unless the key was revoked since the read was sent.
+     * @param readAt time the read was sent, the lease is granted later than that
+     * @param expiresAt time the lease expires, counted from `readAt`
+     */
+    public synchronized void put(String key, String value, long readAt, long expiresAt) {
+        Long revokedAt = revoked.get(key);
+        if (revokedAt != null && revokedAt >= readAt) {
+            return;
+        }
+        if (!entries.containsKey(key) && entries.size() >= capacity) {
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            String victim = eldest.next().getKey();
+            if (frequency(key) <= frequency(victim)) {
+                rejections += 1;
+                return;
+            }
+            eldest.remove();
+            evictions += 1;
+        }
+        entries.put(key, new Entry(value, readAt, expiresAt));
+    }
+
+    /**
+     * Drop the key on revocation of its lease by the master.
+     */
+    public synchronized void revoke(String key, long now) {
+        if (entries.remove(key) != null) {
+            revocations += 1;
+        }
+        forget(key, now);
+    }
+
+    /**
+     * Drop the key written by this client: the value is not to be read from the cache any more.
+     */
+    public synchronized void invalidate(String key, long now) {
+        entries.remove(key);
+        forget(key, now);
+    }
+
+    private void forget(String key, long now) {
+        revoked.put(key, now);
+        if (now - purgedAt >= retainMillis) {
+            revoked.values().removeIf(at -> now - at >= retainMillis);
+            purgedAt = now;
+        }
+    }
+
+    private int index(int hash, int i) {
+        int h = hash * (0x9E3779B9 + 2 * i);
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void increment(String key) {
+        int hash = key.hashCode();
+        for (int i=0; i<4; i++) {
+            int idx = index(hash, i);
+            if (counters[idx] < MAX_COUNT) counters[idx] += 1;
+        }
+        if (++samples >= sampleSize) {
+            for (int i=0; i<counters.length; i++) {
+                counters[i] >>= 1;
+            }
+            samples = 0;
+        }
+    }
+
+    private int frequency(String key) {
+        int hash = key.hashCode();
+        int min = MAX_COUNT;
+        for (int i=0; i<4; i++) {
+            min = Math.min(min, counters[index(hash, i)]);
+        }
+        return min;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized double hitRate() {
+        long n = hits + misses;
+        return (n == 0L) ? 0.0 : (double) hits / n;
+    }
+
+    /**
+     * @return number of cached entries dropped on revocation by the master
+     */
+    public synchronized long revocations() {
+        return revocations;
+    }
+
+    /**
+     * @return number of entries evicted to make room for more frequently read keys
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of values not cached as their keys were read less often than the entry to be evicted
+     */
+    public synchronized long rejections() {
+        return rejections;
+    }
+
+    /**
+     * @return average age of values served from the cache, time since they were read from the master
+     */
+    public synchronized double averageAgeMillis() {
+        return (hits == 0L) ? 0.0 : (double) totalAgeMillis / hits;
+    }
+
+    /**
+     * @return maximum age of a value served from the cache
+     */
+    public synchronized long maxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LeaseCache{" +
+                "size=" + entries.size() +
+                ", hitRate=" + hitRate() +
+                ", revocations=" + revocations +
+                ", evictions=" + evictions +
+                ", rejections=" + rejections +
+                ", avgAgeMillis=" + averageAgeMillis() +
+                ", maxAgeMillis=" + maxAgeMillis +
+                '}';
+    }
+
+    private static class Entry {
+        final String value;
+        final long readAt;
+        final long expiresAt;
+
+        Entry(String value, long readAt, long expiresAt) {
+            this.value = value;
+            this.readAt = readAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
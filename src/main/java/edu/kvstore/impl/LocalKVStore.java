@@ -2,6 +2,9 @@ package edu.kvstore.impl;
 
 import edu.kvstore.api.KVStore;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -30,4 +33,35 @@ public class LocalKVStore implements KVStore<String, String> {
     public boolean delete(String key) {
         return map.remove(key) != null;
     }
+
+    @Override
+    public Map<String, String> multiGet(Collection<String> keys) {
+        Map<String, String> result = new HashMap<>();
+        for (String key : keys) {
+            String value = map.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Boolean> multiPut(Map<String, String> entries) {
+        Map<String, Boolean> result = new HashMap<>();
+        for (Map.Entry<String, String> e : entries.entrySet()) {
+            map.put(e.getKey(), e.getValue());
+            result.put(e.getKey(), true);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Boolean> multiDelete(Collection<String> keys) {
+        Map<String, Boolean> result = new HashMap<>();
+        for (String key : keys) {
+            result.put(key, map.remove(key) != null);
+        }
+        return result;
+    }
 }
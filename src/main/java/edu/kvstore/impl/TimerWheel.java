@@ -0,0 +1,104 @@
+package edu.kvstore.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: an item is put into the slot of the tick its deadline falls into, and when time advances
+ * past a tick, only the items of that tick's slot are looked at. Items due in a later rotation of the wheel
+ * stay in the slot until then. Scheduling is O(1), so is expiring per item; items are never cancelled, whoever
+ * handles an expired item checks that it is still pending. Not thread-safe.
+ * @param <T> type of items
+ */
+class TimerWheel<T> {
+    private final long tickMillis;
+    private final List<List<Timeout<T>>> slots;
+    private final int mask;
+    private long current; // first tick not expired yet
+    private int size = 0;
+
+    /**
+     * @param tickMillis resolution of deadlines: an item expires at the end of the tick of its deadline
+     * @param slots number of slots, a power of two; slots * tickMillis should cover the usual timeout
+     * @param now current time
+     */
+    TimerWheel(long tickMillis, int slots, long now) {
+        if (slots <= 0 || (slots & (slots - 1)) != 0) {
+            throw new IllegalArgumentException("Number of slots must be a power of two: " + slots);
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slots);
+        this.mask = slots - 1;
+        for (int i=0; i<slots; i++) {
+            this.slots.add(new ArrayList<>());
+        }
+        this.current = Math.floorDiv(now, tickMillis);
+    }
+
+    /**
+     * Number of slots for timeouts of the given length at 1 ms ticks, so that they expire within a rotation.
+     */
+    static int slotsFor(long timeoutMillis) {
+        int n = (int) Math.min(Math.max(timeoutMillis, 16L), 4096L);
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Schedule the item to expire once the time is at or past the deadline.
+     */
+    void schedule(long deadline, T item) {
+        // the tick after which the deadline has passed: deadlines on a tick's boundary expire right at it
+        long tick = Math.max(Math.floorDiv(deadline - 1, tickMillis), current);
+        slots.get((int) tick & mask).add(new Timeout<>(deadline, item));
+        size += 1;
+    }
+
+    /**
+     * Hand items whose deadline has passed to the action, looking only at slots of the ticks elapsed.
+     * The action must not schedule items.
+     * @return number of items expired
+     */
+    int expire(long now, Consumer<T> action) {
+        final long target = Math.floorDiv(now, tickMillis);
+        if (target <= current) {
+            return 0;
+        }
+        int expired = 0;
+        if (size > 0) {
+            // after a full rotation every slot has been looked at
+            final long end = Math.min(target, current + slots.size());
+            for (long tick = current; tick < end; tick++) {
+                List<Timeout<T>> slot = slots.get((int) tick & mask);
+                int kept = 0;
+                for (int i=0; i<slot.size(); i++) {
+                    Timeout<T> timeout = slot.get(i);
+                    if (timeout.deadline <= now) {
+                        action.accept(timeout.item);
+                        expired += 1;
+                    } else {
+                        slot.set(kept++, timeout); // due in a later rotation
+                    }
+                }
+                slot.subList(kept, slot.size()).clear();
+            }
+            size -= expired;
+        }
+        current = target;
+        return expired;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static class Timeout<T> {
+        final long deadline;
+        final T item;
+
+        Timeout(long deadline, T item) {
+            this.deadline = deadline;
+            this.item = item;
+        }
+    }
+}
@@ -2,36 +2,54 @@ package edu.membership;
 
 import edu.common.api.Address;
 import edu.common.api.Network;
-import edu.common.api.Payload;
+import edu.common.impl.NodeHost;
 import edu.common.impl.NodeImpl;
+import edu.common.impl.NodeRuntime;
 import edu.common.impl.RemoteAddress;
+import edu.common.impl.ShmNetwork;
+import edu.common.impl.TcpNetwork;
 import edu.common.impl.UdpNetwork;
 import edu.membership.api.*;
 import edu.membership.impl.*;
 
-import java.util.Queue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 public class RemoteNode {
+    private static final long CYCLE_MILLIS = 100;
 
-    private static Network.Node run(Address self) {
-        final Network network = new UdpNetwork();
+    private static Network makeNetwork() {
+        // select transport with -Dnetwork=tcp or -Dnetwork=shm, UDP is the default
+        String network = System.getProperty("network");
+        if ("tcp".equals(network)) return new TcpNetwork();
+        else if ("shm".equals(network)) return new ShmNetwork();
+        else return new UdpNetwork();
+    }
+
+    private static Network.Node makeNode(Address self, Network network) {
+        return makeNode(self, network, null, null);
+    }
+
+    private static Network.Node makeNode(Address self, Network network, Executor memberLane, Executor keyvalLane) {
         final Supplier<Long> clock = System::currentTimeMillis;
-        final Network.Node node = new NodeImpl(self, network, clock, 1000, 2000, 500, 3);
+        return new NodeImpl(self, network, clock, 1000, 2000, 500, 3, memberLane, keyvalLane);
+    }
+
+    private static Executor makeLane(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Network.Node run(Address self) {
+        final Network network = makeNetwork();
+        // membership gets its own thread, so that key-value work never delays heartbeats
+        final Network.Node node = makeNode(self, network, makeLane("membership-lane"), makeLane("keyval-lane"));
         final Network.Listener listener = network.listen(self);
-        final Queue<Payload> queue = listener.queue();
-        Runnable runnable = () -> {
-            node.cycle();
-            while (!queue.isEmpty()) {
-                Payload payload = queue.poll();
-                node.handle(payload);
-            }
-        };
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
-        executor.scheduleAtFixedRate(runnable, 100, 100, TimeUnit.MILLISECONDS);
+        new NodeRuntime(node, listener, CYCLE_MILLIS).start();
         return node;
     }
 
@@ -39,6 +57,23 @@ public class RemoteNode {
         run(self).join(leader);
     }
 
+    /**
+     * Host nodes at consecutive ports starting from `self` in this process, all joining the leader
+     * (or the first hosted node, if there is no leader).
+     */
+    private static void host(Address self, Address leader, int nrOfNodes) {
+        final Network network = makeNetwork();
+        final NodeHost host = new NodeHost(network, CYCLE_MILLIS);
+        final Address first = (leader != null) ? leader : self;
+        for (int i = 0; i < nrOfNodes; i++) {
+            Address address = new RemoteAddress(self.host(), self.port() + i);
+            Network.Node node = host.add(makeNode(address, network));
+            if (!address.equals(first)) {
+                host.execute(address, () -> node.join(first));
+            }
+        }
+    }
+
     public static void main(String args[]) {
         if (args.length == 0) {
             System.out.println("Arguments: <port> <leader address>, e.g. 10001 127.0.0.1:10000");
@@ -48,9 +83,17 @@ public class RemoteNode {
         int port = Integer.parseInt(args[0]);
         final Address self = new RemoteAddress("127.0.0.1", port);
 
+        Address leader = null;
         if (args.length >= 2) {
             String addr[] = args[1].split(":");
-            final Address leader = new RemoteAddress(addr[0], Integer.parseInt(addr[1]));
+            leader = new RemoteAddress(addr[0], Integer.parseInt(addr[1]));
+        }
+
+        // host several nodes in this process with -Dnodes=<count>
+        int nrOfNodes = Integer.getInteger("nodes", 1);
+        if (nrOfNodes > 1) {
+            host(self, leader, nrOfNodes);
+        } else if (leader != null) {
             run(self, leader);
         } else {
             run(self);
@@ -15,6 +15,11 @@ import java.util.stream.Stream;
 public class Simulation {
     private static final Logger logger = LogManager.getLogger(Simulation.class);
 
+    private static final String LOCAL = "local";
+    private static final String UDP = "udp";
+    private static final String TCP = "tcp";
+    private static final String SHM = "shm";
+
     private long currentTime = 0L;
     private final Supplier<Long> clock = () -> currentTime * 100;
 
@@ -22,9 +27,14 @@ public class Simulation {
         return new NodeImpl(address, network, clock, 500, 1500, 300, 3);
     }
 
-    private Network makeNetwork(boolean isLocal) {
-        if (isLocal) return new LocalNetwork();
-        else return new UdpNetwork();
+    private Network makeNetwork(String transport) {
+        switch (transport) {
+            case LOCAL: return new LocalNetwork();
+            case UDP: return new UdpNetwork();
+            case TCP: return new TcpNetwork();
+            case SHM: return new ShmNetwork();
+            default: throw new IllegalArgumentException("Unknown transport: " + transport);
+        }
     }
 
     private Address makeAddress(int port, boolean isLocal) {
@@ -39,21 +49,17 @@ public class Simulation {
                 .collect(Collectors.toList());
     }
 
-    private String key(Address address) {
-        return address.host() + ":" + address.port();
-    }
-
-    private void run(int nrOfNodes, boolean isLocal) {
-        final Network network = makeNetwork(isLocal);
+    private void run(int nrOfNodes, String transport) {
+        final boolean isLocal = LOCAL.equals(transport);
+        final Network network = makeNetwork(transport);
 
         List<Network.Node> nodes = makeNodes(nrOfNodes, network, isLocal);
-        Map<String, Network.Listener> listeners = new HashMap<>();
+        Map<Address, Network.Listener> listeners = new HashMap<>();
 
         Network.Node master = nodes.get(0);
         nodes.forEach(n -> {
-            String key = key(n.address());
             Network.Listener listener = network.listen(n.address());
-            listeners.put(key, listener);
+            listeners.put(n.address(), listener);
         });
 
         nodes.forEach(n -> n.join(master.address()));
@@ -66,8 +72,7 @@ public class Simulation {
             nodes.forEach((n) -> {
                     n.cycle();
 
-                    String key = key(n.address());
-                    Network.Listener listener = listeners.get(key);
+                    Network.Listener listener = listeners.get(n.address());
 
                     while (! listener.queue().isEmpty()) {
                         Payload payload = listener.queue().poll();
@@ -100,8 +105,11 @@ public class Simulation {
         if (args.length > 0) {
             nrOfNodes = Integer.parseInt(args[0]);
         }
+        String transport = UDP;
+        if (args.length > 1) {
+            transport = args[1];
+        }
         Simulation runner = new Simulation();
-        boolean isLocal = false;
-        runner.run(nrOfNodes, isLocal);
+        runner.run(nrOfNodes, transport);
     }
 }
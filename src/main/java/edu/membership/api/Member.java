@@ -3,13 +3,16 @@ package edu.membership.api;
 import edu.common.api.Address;
 
 public class Member {
+    private static final int ID_CACHE_SIZE = 1024; // power of two
+    private static final Id ids[] = new Id[ID_CACHE_SIZE];
+
     public final String id;
     public final Address address;
     public final long timestamp;
     public final long heartbeat;
 
     public Member(Address address, long timestamp, long heartbeat) {
-        this.id = address.host() + ":" + address.port();
+        this.id = id(address);
         this.address = address;
         this.timestamp = timestamp;
         this.heartbeat = heartbeat;
@@ -47,4 +50,30 @@ public class Member {
                 ",hb=" + heartbeat +
                 '}';
     }
+
+    /**
+     * Member id is "host:port", kept as the membership table key; strings of recently seen addresses are reused
+     * (looked up by packed address) so that decoding a member list does not concatenate a string per member.
+     */
+    private static String id(Address address) {
+        long packed = address.id();
+        int idx = (int) (packed ^ (packed >>> 21)) & (ID_CACHE_SIZE - 1);
+        Id cached = ids[idx];
+        if (cached != null && cached.address.equals(address)) {
+            return cached.id;
+        }
+        Id id = new Id(address, address.host() + ":" + address.port());
+        ids[idx] = id;
+        return id.id;
+    }
+
+    private static class Id {
+        final Address address;
+        final String id;
+
+        Id(Address address, String id) {
+            this.address = address;
+            this.id = id;
+        }
+    }
 }
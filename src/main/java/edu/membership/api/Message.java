@@ -6,7 +6,8 @@ import java.util.List;
 public class Message {
     public enum Type {
         JOIN,
-        MEMBER_LIST
+        MEMBER_LIST,
+        LIST // request for the member list, from a client that is not a member
     }
 
     public final Type type;
@@ -24,10 +24,11 @@ public class GossipMembership implements Membership {
         TAG = self.host() + ":" + self.port();
     }
 
+    // read by key-value processing too, which may run on another thread than membership
     private final Map<String, Member> members = new HashMap<>();
 
     @Override
-    public void add(Member member, long now) {
+    public synchronized void add(Member member, long now) {
         if (now - member.timestamp < timeFailedMillis) {
             if (members.containsKey(member.id)) {
                 Member entry = members.get(member.id);
@@ -54,8 +55,7 @@ public class GossipMembership implements Membership {
         List<Member> result = new ArrayList<>();
         for (String id : failed) {
             if (now - members.get(id).timestamp >= timeFailedMillis + timeCleanupMillis) {
-                members.remove(id);
-                result.add(members.get(id));
+                result.add(members.remove(id));
                 logger.info("[{} T={}] Member {} removed from member list", TAG, now, id);
             }
         }
@@ -63,18 +63,18 @@ public class GossipMembership implements Membership {
     }
 
     @Override
-    public List<Member> list(long now) {
+    public synchronized List<Member> list(long now) {
         cleanup(now);
         return new ArrayList<>(members.values());
     }
 
     @Override
-    public List<Member> failed(long now) {
+    public synchronized List<Member> failed(long now) {
         return cleanup(now);
     }
 
     @Override
-    public void reset() {
+    public synchronized void reset() {
         members.clear();
     }
 
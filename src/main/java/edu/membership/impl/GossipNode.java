@@ -63,6 +63,11 @@ public class GossipNode implements MemberNode {
                     membership.add(m, localtime);
                 }
                 break;
+            case LIST:
+                Member self = new Member(address, localtime, heartbeat);
+                network.send(message.sender.address, Payload.of(
+                        new Message(Message.Type.MEMBER_LIST, self, membership.list(localtime))));
+                break;
             default:
                 logger.warn("Unexpected message: {}", message);
                 break;
@@ -0,0 +1,196 @@
+package edu.common.impl;
+
+import edu.common.api.Codec;
+import edu.common.api.MessageCodec;
+import edu.common.api.Payload;
+import edu.membership.api.Member;
+import edu.membership.api.Message;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCodecTest {
+
+    private static final RemoteAddress sender = new RemoteAddress("127.0.0.1", 12345);
+
+    private final Codec codec = new BinaryCodec();
+
+    private Payload roundTrip(Payload payload, ByteBuffer buffer) {
+        codec.encode(payload, buffer);
+        buffer.flip();
+        Payload decoded = codec.decode(buffer);
+        assertFalse(buffer.hasRemaining(), "payload must be fully consumed");
+        return decoded;
+    }
+
+    private edu.kvstore.api.Message keyval(String key, String value) {
+        return new edu.kvstore.api.Message(edu.kvstore.api.Message.Type.UPDATE, 1L << 40, sender, key, value, true);
+    }
+
+    @Test
+    void keyvalRoundTrip() {
+        for (ByteBuffer buffer : Arrays.asList(ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024))) {
+            Payload payload = Payload.of(keyval("\u043a\u043b\u044e\u0447-\u20ac-\ud83d\ude00", "value"));
+            assertEquals(payload, roundTrip(payload, buffer));
+            buffer.clear();
+        }
+    }
+
+    @Test
+    void nullValueDistinctFromEmpty() {
+        Payload withNull = roundTrip(Payload.of(keyval("key", null)), ByteBuffer.allocate(64));
+        Payload withEmpty = roundTrip(Payload.of(keyval("key", "")), ByteBuffer.allocate(64));
+        assertEquals(null, withNull.keyval.value());
+        assertEquals("", withEmpty.keyval.value());
+    }
+
+    @Test
+    void keyvalRoundTripKeepsEveryField() {
+        edu.kvstore.api.Message message = keyval("key", null);
+        Payload decoded = roundTrip(Payload.of(message), ByteBuffer.allocate(64));
+        assertEquals(message, decoded.keyval);
+        assertEquals(message.hashCode(), decoded.keyval.hashCode());
+
+        assertFalse(message.equals(message.accept(2L)), "seqNr must be compared");
+        assertFalse(message.equals(message.ok(sender)), "type must be compared");
+        assertFalse(message.equals(new edu.kvstore.api.Message(message.type, message.seqNr, sender, "other", null, true)),
+                "key must be compared");
+        assertFalse(message.equals(new edu.kvstore.api.Message(message.type, message.seqNr, sender, "key", null, false)),
+                "replica flag must be compared");
+    }
+
+    @Test
+    void receivedMessageForwardedWithoutDecodingValue() {
+        Payload payload = Payload.of(keyval("key", "\u20ac-value"));
+        ByteBuffer first = ByteBuffer.allocate(1024);
+        codec.encode(payload, first);
+        first.flip();
+        Payload received = codec.decode(first.duplicate());
+
+        assertNotNull(received.keyval.valueBytes(), "value must be kept undecoded");
+        ByteBuffer forwarded = ByteBuffer.allocate(1024);
+        codec.encode(received, forwarded);
+        forwarded.flip();
+        assertEquals(first, forwarded);
+
+        edu.kvstore.api.Message replica = received.keyval.replica(sender).accept(7L);
+        assertNotNull(replica.valueBytes(), "derived message must keep the value undecoded");
+        assertEquals(keyval("key", "\u20ac-value").replica(sender).accept(7L), roundTrip(Payload.of(replica), ByteBuffer.allocate(1024)).keyval);
+        assertEquals("\u20ac-value", received.keyval.value());
+    }
+
+    @Test
+    void asciiKeyTakesOneBytePerChar() {
+        String key = "17bc3e00-9fb0-4c5a-8c54-ea9af782a678";
+        ByteBuffer empty = ByteBuffer.allocate(1024);
+        codec.encode(Payload.of(keyval("", null)), empty);
+        ByteBuffer full = ByteBuffer.allocate(1024);
+        codec.encode(Payload.of(keyval(key, null)), full);
+        assertEquals(key.length(), full.position() - empty.position());
+    }
+
+    @Test
+    void memberListRoundTrip() {
+        Payload payload = Payload.of(new Message(
+                Message.Type.MEMBER_LIST,
+                new Member(sender, 20001000, 1000),
+                Arrays.asList(
+                        new Member(new RemoteAddress("10.0.0.1", 10000), 20001000, 1000),
+                        new Member(new RemoteAddress("10.0.0.2", 10001), 0, 0))));
+        assertEquals(payload, roundTrip(payload, ByteBuffer.allocateDirect(1024)));
+
+        Payload join = Payload.of(new Message(Message.Type.JOIN, new Member(sender, 1, 2), Collections.emptyList()));
+        assertEquals(join, roundTrip(join, ByteBuffer.allocate(1024)));
+    }
+
+    @Test
+    void memberListEncodedAsDeltas() {
+        List<Member> members = new ArrayList<>();
+        for (int i=0; i<100; i++) {
+            members.add(new Member(new RemoteAddress(i < 50 ? "10.0.0.1" : "10.0.0.2", 10000 + i), 1516193567112L - i, 42 + i));
+        }
+        Member self = new Member(sender, 1516193567112L, 100);
+        Payload payload = Payload.of(new Message(Message.Type.MEMBER_LIST, self, members));
+
+        ByteBuffer shared = ByteBuffer.allocate(4096);
+        assertEquals(payload, roundTrip(payload, shared));
+        assertTrue(shared.limit() < 100 * 6, "member must take less than 6 bytes: " + shared.limit());
+
+        Codec plain = new BinaryCodec(false);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        plain.encode(payload, buffer);
+        buffer.flip();
+        assertEquals(payload, codec.decode(buffer));
+        assertTrue(shared.limit() < buffer.limit());
+    }
+
+    private static class Ping {
+        final long nanos;
+
+        Ping(long nanos) {
+            this.nanos = nanos;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof Ping) && ((Ping) o).nanos == nanos;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(nanos);
+        }
+    }
+
+    @Test
+    void registeredMessageRoundTrip() {
+        BinaryCodec extended = new BinaryCodec().register(16, Ping.class, new MessageCodec<Ping>() {
+            @Override
+            public void encode(Ping message, ByteBuffer buffer) {
+                Wire.putVarint(buffer, message.nanos);
+            }
+
+            @Override
+            public Ping decode(ByteBuffer buffer, int version) {
+                return new Ping(Wire.getVarint(buffer));
+            }
+        });
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        Payload ping = Payload.of(new Ping(123456789L));
+        extended.encode(ping, buffer);
+        extended.encode(Payload.of(keyval("key", "value")), buffer);
+        buffer.flip();
+        assertEquals(ping, extended.decode(buffer));
+        assertEquals(Payload.of(keyval("key", "value")), extended.decode(buffer));
+
+        assertThrows(IllegalStateException.class, () -> codec.encode(ping, ByteBuffer.allocate(1024)));
+        assertThrows(IllegalArgumentException.class, () -> extended.register(2, Ping.class, null));
+    }
+
+    @Test
+    void unsupportedVersionRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        codec.encode(Payload.of(keyval("key", "value")), buffer);
+        buffer.flip();
+        buffer.put(0, (byte) (BinaryCodec.VERSION + 1));
+        assertThrows(IllegalStateException.class, () -> codec.decode(buffer));
+    }
+
+    @Test
+    void batchRoundTrip() {
+        edu.kvstore.api.Batch batch = new edu.kvstore.api.Batch(edu.kvstore.api.Message.Type.CREATE, 42L, sender,
+                Arrays.asList("a", "b", "c"), Arrays.asList("1", null, "\u041f\u0440\u0438\u0432\u0456\u0442"), true);
+        assertEquals(Payload.of(batch), roundTrip(Payload.of(batch), ByteBuffer.allocate(1024)));
+    }
+}
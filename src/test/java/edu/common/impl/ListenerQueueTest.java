@@ -0,0 +1,102 @@
+package edu.common.impl;
+
+import edu.common.api.Payload;
+import edu.membership.api.Member;
+import edu.membership.api.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ListenerQueueTest {
+
+    private static final LocalAddress address = new LocalAddress(0);
+
+    private static Payload member(long hb) {
+        return Payload.of(new Message(Message.Type.JOIN, new Member(address, 0, hb), Collections.emptyList()));
+    }
+
+    private static Payload keyval(long seq) {
+        return Payload.of(new edu.kvstore.api.Message(edu.kvstore.api.Message.Type.READ, seq, address, "key", null));
+    }
+
+    @Test
+    void dropOldestKeepsNewest() {
+        ListenerQueue queue = new ListenerQueue(2, ListenerQueue.Overflow.DROP_OLDEST);
+        assertTrue(queue.offer(keyval(1)));
+        assertTrue(queue.offer(keyval(2)));
+        assertTrue(queue.offer(keyval(3)));
+
+        assertEquals(keyval(2), queue.poll());
+        assertEquals(keyval(3), queue.poll());
+        assertEquals(3, queue.enqueued());
+        assertEquals(1, queue.dropped());
+        assertEquals(2, queue.highWaterMark());
+    }
+
+    @Test
+    void dropNewestRejectsWhenFull() {
+        ListenerQueue queue = new ListenerQueue(2, ListenerQueue.Overflow.DROP_NEWEST);
+        assertTrue(queue.offer(keyval(1)));
+        assertTrue(queue.offer(keyval(2)));
+        assertFalse(queue.offer(keyval(3)));
+
+        assertEquals(keyval(1), queue.poll());
+        assertEquals(keyval(2), queue.poll());
+        assertEquals(2, queue.enqueued());
+        assertEquals(1, queue.dropped());
+    }
+
+    @Test
+    void membershipPrioritizedOverKeyval() {
+        ListenerQueue queue = new ListenerQueue(2, ListenerQueue.Overflow.PRIORITIZE_MEMBERSHIP);
+        assertTrue(queue.offer(keyval(1)));
+        assertTrue(queue.offer(keyval(2)));
+        assertTrue(queue.offer(member(1)));
+        assertFalse(queue.offer(keyval(3)));
+
+        assertEquals(member(1), queue.poll());
+        assertEquals(keyval(2), queue.poll());
+        assertEquals(null, queue.poll());
+        assertEquals(2, queue.dropped());
+    }
+
+    @Test
+    void pollWaitsForPayload() throws Exception {
+        ListenerQueue queue = new ListenerQueue();
+        assertEquals(null, queue.poll(10, TimeUnit.MILLISECONDS));
+
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                /* ignore */
+            }
+            queue.offer(keyval(1));
+        });
+        producer.start();
+
+        assertEquals(keyval(1), queue.poll(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test
+    void nextCompletedByOffer() throws Exception {
+        ListenerQueue queue = new ListenerQueue();
+        queue.offer(keyval(1));
+        assertEquals(keyval(1), queue.next().get(0, TimeUnit.MILLISECONDS));
+
+        CompletableFuture<Payload> cancelled = queue.next();
+        CompletableFuture<Payload> future = queue.next();
+        cancelled.cancel(false);
+        assertTrue(queue.offer(keyval(2)));
+
+        assertEquals(keyval(2), future.get(0, TimeUnit.MILLISECONDS));
+        assertTrue(queue.isEmpty(), "payload completing a future is not queued");
+    }
+}
@@ -0,0 +1,121 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.Network;
+import edu.common.api.Payload;
+import edu.kvstore.api.Message;
+import edu.kvstore.api.Ring;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NodeHostTest {
+    private static final int PAYLOADS = 500;
+    private static final int NODES = 200;
+    private static final int PARALLELISM = 2;
+
+    private static class HostedNode implements Network.Node {
+        final Address address;
+        final List<Long> handled = new ArrayList<>();
+        final AtomicBoolean isBusy = new AtomicBoolean(false);
+        final AtomicBoolean overlapped = new AtomicBoolean(false);
+        final Set<Thread> threads;
+        final CountDownLatch done;
+        int cycles = 0;
+
+        HostedNode(Address address, Set<Thread> threads, CountDownLatch done) {
+            this.address = address;
+            this.threads = threads;
+            this.done = done;
+        }
+
+        private void enter() {
+            if (!isBusy.compareAndSet(false, true)) {
+                overlapped.set(true);
+            }
+            threads.add(Thread.currentThread());
+        }
+
+        private void exit() {
+            isBusy.set(false);
+        }
+
+        @Override
+        public void handle(Payload payload) {
+            enter();
+            handled.add(payload.keyval.seqNr);
+            if (handled.size() == PAYLOADS) {
+                done.countDown();
+            }
+            exit();
+        }
+
+        @Override
+        public void cycle() {
+            enter();
+            cycles += 1;
+            exit();
+        }
+
+        @Override public Address address() { return address; }
+        @Override public void join(Address leader) { }
+        @Override public List<Address> peers() { return Collections.emptyList(); }
+        @Override public Ring<String> ring() { return null; }
+        @Override public void fail() { }
+    }
+
+    @Test
+    void nodesDrivenSeriallyOnBoundedThreads() throws Exception {
+        Network network = new LocalNetwork();
+        Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        CountDownLatch done = new CountDownLatch(NODES);
+        List<HostedNode> nodes = new ArrayList<>();
+
+        try (NodeHost host = new NodeHost(network, 1, PARALLELISM)) {
+            for (int i = 0; i < NODES; i++) {
+                nodes.add(host.add(new HostedNode(new LocalAddress(10000 + i), threads, done)));
+            }
+            assertEquals(NODES, host.nodes().size());
+
+            for (long seq = 0; seq < PAYLOADS; seq++) {
+                for (HostedNode node : nodes) {
+                    network.send(node.address, Payload.of(new Message(Message.Type.READ, seq, node.address, "key", null)));
+                }
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS), "All payloads must be handled");
+        }
+
+        for (HostedNode node : nodes) {
+            assertFalse(node.overlapped.get(), "Calls to a node must not overlap");
+            for (int i = 0; i < PAYLOADS; i++) {
+                assertEquals((long) i, (long) node.handled.get(i), "Payloads must be handled in order");
+            }
+        }
+        assertTrue(threads.size() <= PARALLELISM, "Nodes must run on the shared pool only: " + threads.size());
+    }
+
+    @Test
+    void removedNodeStopsListening() throws Exception {
+        Network network = new LocalNetwork();
+        Address address = new LocalAddress(10000);
+        Payload payload = Payload.of(new Message(Message.Type.READ, 1L, address, "key", null));
+
+        try (NodeHost host = new NodeHost(network, 1000, 1)) {
+            host.add(new HostedNode(address, Collections.newSetFromMap(new ConcurrentHashMap<>()), new CountDownLatch(1)));
+            host.remove(address);
+            assertTrue(host.nodes().isEmpty());
+            assertFalse(network.send(address, payload), "Listener must be closed with the node removed");
+        }
+    }
+}
@@ -6,6 +6,7 @@ import edu.common.api.Payload;
 import edu.kvstore.api.Message;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Supplier;
@@ -128,4 +129,37 @@ class NodeImplTest {
         assertEquals(read3Message.ok(selfAddr), client.queue().poll().keyval);
     }
 
+    @Test
+    void membershipLaneNotBlockedByKeyvalLane() {
+        Address selfAddr = makeAddress(10010);
+        Address peerAddr = makeAddress(10020);
+        Address clientAddr = makeAddress(9999);
+
+        List<Runnable> deferred = new ArrayList<>();
+        NodeImpl selfNode = new NodeImpl(selfAddr, network, clock, TIME_FAILED_MILLIS, TIME_CLEANUP_MILLIS, TIMEOUT_MILLIS, REPLICATION_FACTOR,
+                Runnable::run, deferred::add);
+        Network.Node peerNode = makeNode(peerAddr);
+
+        Network.Listener self = network.listen(selfAddr);
+        network.listen(peerAddr);
+
+        // key-value lane is stuck, membership must still be processed
+        String key = "17bc3e00-9fb0-4c5a-8c54-ea9af782a678";
+        selfNode.handle(Payload.of(new Message(Message.Type.READ, 0L, clientAddr, key, null, false)));
+        selfNode.handle(Payload.of(new Message(Message.Type.READ, 1L, clientAddr, key, null, false)));
+        peerNode.join(selfAddr);
+        handle(selfNode, self, 1);
+
+        assertEquals(Arrays.asList(selfAddr, peerAddr), selfNode.peers());
+        assertEquals(1L, selfNode.memberLane().executed());
+        assertEquals(0, selfNode.memberLane().depth());
+        assertEquals(2, selfNode.keyvalLane().depth());
+        assertEquals(0L, selfNode.keyvalLane().executed());
+
+        deferred.forEach(Runnable::run);
+        assertEquals(2L, selfNode.keyvalLane().executed());
+        assertEquals(0, selfNode.keyvalLane().depth());
+        assertEquals(2, selfNode.keyvalLane().maxDepth());
+    }
+
 }
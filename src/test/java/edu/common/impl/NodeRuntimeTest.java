@@ -0,0 +1,106 @@
+package edu.common.impl;
+
+import edu.common.api.Address;
+import edu.common.api.Network;
+import edu.common.api.Payload;
+import edu.kvstore.api.Message;
+import edu.kvstore.api.Ring;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NodeRuntimeTest {
+
+    private static class RecordingNode implements Network.Node {
+        final Address address;
+        final BlockingQueue<Payload> handled = new LinkedBlockingQueue<>();
+        final CountDownLatch cycles;
+
+        RecordingNode(Address address, int expectedCycles) {
+            this.address = address;
+            this.cycles = new CountDownLatch(expectedCycles);
+        }
+
+        @Override public void handle(Payload payload) { handled.offer(payload); }
+        @Override public Address address() { return address; }
+        @Override public void join(Address leader) { }
+        @Override public List<Address> peers() { return Collections.emptyList(); }
+        @Override public Ring<String> ring() { return null; }
+        @Override public void fail() { }
+        @Override public void cycle() { cycles.countDown(); }
+    }
+
+    @Test
+    void payloadsDispatchedWithoutWaitingForCycle() throws Exception {
+        Network network = new LocalNetwork();
+        Address address = new LocalAddress(10000);
+        RecordingNode node = new RecordingNode(address, 1);
+        Network.Listener listener = network.listen(address);
+
+        NodeRuntime runtime = new NodeRuntime(node, listener, 60_000).start();
+        try {
+            Payload payload = Payload.of(new Message(Message.Type.READ, 1L, address, "key", null));
+            network.send(address, payload);
+            assertEquals(payload, node.handled.poll(5, TimeUnit.SECONDS));
+            assertEquals(1L, node.cycles.getCount(), "Cycle must not be due yet");
+        } finally {
+            runtime.close();
+        }
+    }
+
+    @Test
+    void cyclesRunOnTheirOwnPeriod() throws Exception {
+        Network network = new LocalNetwork();
+        Address address = new LocalAddress(10000);
+        RecordingNode node = new RecordingNode(address, 3);
+        Network.Listener listener = network.listen(address);
+
+        NodeRuntime runtime = new NodeRuntime(node, listener, 10).start();
+        try {
+            assertTrue(node.cycles.await(5, TimeUnit.SECONDS), "Cycles must run with no payloads received");
+        } finally {
+            runtime.close();
+        }
+    }
+
+    @Test
+    void missedCyclesSkipped() throws Exception {
+        Network network = new LocalNetwork();
+        Address address = new LocalAddress(10000);
+        BlockingQueue<Long> ends = new LinkedBlockingQueue<>();
+        BlockingQueue<Long> starts = new LinkedBlockingQueue<>();
+        RecordingNode node = new RecordingNode(address, 1) {
+            @Override public void cycle() {
+                starts.offer(System.nanoTime());
+                if (starts.size() == 1) {
+                    try {
+                        Thread.sleep(100); // miss ten cycles
+                    } catch (InterruptedException e) {
+                        /* ignore */
+                    }
+                }
+                ends.offer(System.nanoTime());
+            }
+        };
+        Network.Listener listener = network.listen(address);
+
+        NodeRuntime runtime = new NodeRuntime(node, listener, 10).start();
+        try {
+            long firstEnd = ends.poll(5, TimeUnit.SECONDS);
+            starts.poll();
+            long secondStart = starts.poll(5, TimeUnit.SECONDS);
+            assertTrue(secondStart - firstEnd >= TimeUnit.MILLISECONDS.toNanos(5),
+                    "Cycle after a late one must wait for its period");
+        } finally {
+            runtime.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package edu.common.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReassemblerTest {
+
+    private static final SocketAddress sender = new InetSocketAddress("127.0.0.1", 12345);
+
+    private ByteBuffer chunk(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+
+    @Test
+    void fragmentsReassembledInAnyOrder() {
+        Reassembler reassembler = new Reassembler(1024, 16, 1000);
+        assertNull(reassembler.add(sender, 1, 2, 3, chunk("ghi"), 0));
+        assertNull(reassembler.add(sender, 1, 0, 3, chunk("abc"), 0));
+        assertNull(reassembler.add(sender, 1, 0, 3, chunk("abc"), 0));
+        ByteBuffer whole = reassembler.add(sender, 1, 1, 3, chunk("def"), 0);
+
+        assertNotNull(whole);
+        assertEquals("abcdefghi", new String(whole.array(), 0, whole.remaining()));
+        assertEquals(0, reassembler.pending());
+        assertEquals(0, reassembler.bytes());
+    }
+
+    @Test
+    void incompleteMessageExpires() {
+        Reassembler reassembler = new Reassembler(1024, 16, 1000);
+        reassembler.add(sender, 1, 0, 2, chunk("abc"), 0);
+        reassembler.add(sender, 2, 0, 2, chunk("abc"), 500);
+
+        reassembler.expire(1000);
+        assertEquals(1, reassembler.pending());
+
+        assertNull(reassembler.add(sender, 1, 1, 2, chunk("def"), 1000));
+        assertEquals(2, reassembler.pending());
+    }
+
+    @Test
+    void oldestMessageEvictedWhenOverMemoryLimit() {
+        final int held = 4 + 2 * Reassembler.REFERENCE_BYTES; // a fragment of 4 bytes out of 2
+        Reassembler reassembler = new Reassembler(2 * held, 16, 1000);
+        reassembler.add(sender, 1, 0, 2, chunk("abcd"), 0);
+        reassembler.add(sender, 2, 0, 2, chunk("abcd"), 0);
+        reassembler.add(sender, 3, 0, 2, chunk("abcd"), 0);
+
+        assertEquals(2, reassembler.pending());
+        assertEquals(2 * held, reassembler.bytes());
+        assertNull(reassembler.add(sender, 1, 1, 2, chunk("efgh"), 0));
+    }
+
+    @Test
+    void fragmentTablesCountTowardsMemoryLimit() {
+        Reassembler reassembler = new Reassembler(1024, 64, 1000);
+        for (int id=0; id<10; id++) {
+            reassembler.add(sender, id, 0, 64, chunk("a"), 0);
+        }
+        assertEquals(1, reassembler.pending(), "tiny fragments of many-fragment messages must not pile up");
+        assertEquals(1 + 64 * Reassembler.REFERENCE_BYTES, reassembler.bytes());
+    }
+
+    @Test
+    void messageOfTooManyFragmentsRejected() {
+        Reassembler reassembler = new Reassembler(1024, 16, 1000);
+        assertThrows(IllegalStateException.class, () -> reassembler.add(sender, 1, 0, 17, chunk("a"), 0));
+        assertEquals(0, reassembler.pending());
+        assertEquals(0, reassembler.bytes());
+    }
+}
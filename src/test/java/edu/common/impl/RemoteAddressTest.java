@@ -0,0 +1,33 @@
+package edu.common.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RemoteAddressTest {
+
+    @Test
+    void addressPackedIntoId() {
+        RemoteAddress address = new RemoteAddress("192.168.1.20", 10000);
+        assertEquals("192.168.1.20", address.host());
+        assertEquals(10000, address.port());
+        assertEquals((0xC0A80114L << 16) | 10000, address.id());
+        assertEquals(address, RemoteAddress.of(address.ip(), address.port()));
+    }
+
+    @Test
+    void hashCodeKeepsRingPlacement() {
+        RemoteAddress address = new RemoteAddress("127.0.0.1", 10001);
+        byte legacy[] = { 127, 0, 0, 1 };
+        assertEquals(31 * Arrays.hashCode(legacy) + 10001, address.hashCode());
+    }
+
+    @Test
+    void decodedAddressesReused() {
+        RemoteAddress first = RemoteAddress.of(0x7F000001, 10002);
+        assertSame(first, RemoteAddress.of(0x7F000001, 10002));
+    }
+}
@@ -0,0 +1,63 @@
+package edu.common.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RingBufferTest {
+
+    private static void publish(RingBuffer ring, String s) {
+        ByteBuffer slot = ring.claim(s.length());
+        assertNotNull(slot);
+        slot.put(s.getBytes());
+        ring.publish();
+    }
+
+    private static String read(RingBuffer ring, long sequence) {
+        ByteBuffer slot = ring.slot(sequence);
+        byte bytes[] = new byte[slot.remaining()];
+        slot.duplicate().get(bytes);
+        return new String(bytes);
+    }
+
+    @Test
+    void fullRingRejectsUntilReleased() {
+        RingBuffer ring = new RingBuffer(2, 8);
+        assertEquals(-1L, ring.cursor());
+        publish(ring, "abc");
+        publish(ring, "de");
+        assertNull(ring.claim(1), "ring must be full");
+
+        assertEquals(1L, ring.cursor());
+        assertEquals("abc", read(ring, 0));
+        assertEquals("de", read(ring, 1));
+
+        ring.release(0);
+        publish(ring, "f");
+        assertEquals("f", read(ring, 2));
+        assertNull(ring.claim(1), "ring must be full again");
+    }
+
+    @Test
+    void slotsReusedAndGrownOnDemand() {
+        RingBuffer ring = new RingBuffer(1, 4);
+        ByteBuffer first = ring.claim(4);
+        ring.publish();
+        ring.release(0);
+
+        assertSame(first, ring.claim(2));
+        ring.publish();
+        ring.release(1);
+
+        ByteBuffer larger = ring.claim(16);
+        assertEquals(16, larger.capacity());
+        larger.put("0123456789abcdef".getBytes());
+        ring.publish();
+        assertEquals("0123456789abcdef", read(ring, 2));
+    }
+}
@@ -0,0 +1,96 @@
+package edu.common.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedMemoryRingTest {
+
+    private static ByteBuffer frame(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+
+    private final long now = System.currentTimeMillis();
+
+    private List<String> read(SharedMemoryRing ring) {
+        List<String> frames = new ArrayList<>();
+        ring.read(frame -> {
+            byte bytes[] = new byte[frame.remaining()];
+            frame.get(bytes);
+            frames.add(new String(bytes));
+        }, now);
+        return frames;
+    }
+
+    @Test
+    void framesWrapAroundEndOfRing() throws Exception {
+        Path path = Files.createTempDirectory("ring").resolve("1.ring");
+        try (SharedMemoryRing reader = SharedMemoryRing.create(path, 32);
+             SharedMemoryRing writer = SharedMemoryRing.open(path, now)) {
+            assertTrue(writer.write(frame("0123456789"), now));  // 16 bytes with length and padding
+            assertTrue(writer.write(frame("abcdefghij"), now));
+            assertFalse(writer.write(frame("x"), now), "ring must be full");
+            assertEquals(2, read(reader).size());
+
+            assertTrue(writer.write(frame("klmnopq"), now));     // 12 bytes: [0..12)
+            assertTrue(writer.write(frame("rstuvwxyz"), now));   // 16 bytes: [12..28)
+            assertEquals(2, read(reader).size());
+            assertTrue(writer.write(frame("ABCDEFGH"), now));    // wraps: [28..32) + [0..8)
+            assertEquals(1, read(reader).size());
+        }
+    }
+
+    @Test
+    void wrappedFrameReadWhole() throws Exception {
+        Path path = Files.createTempDirectory("ring").resolve("1.ring");
+        try (SharedMemoryRing reader = SharedMemoryRing.create(path, 32);
+             SharedMemoryRing writer = SharedMemoryRing.open(path, now)) {
+            assertTrue(writer.write(frame("0123456789ab"), now)); // 16 bytes
+            assertTrue(writer.write(frame("cdef"), now));         // 8 bytes
+            read(reader);
+            assertTrue(writer.write(frame("ghijklmnopqrstuv"), now)); // length at 24, bytes at [28..32) + [0..12)
+            List<String> frames = read(reader);
+            assertEquals(1, frames.size());
+            assertEquals("ghijklmnopqrstuv", frames.get(0));
+        }
+    }
+
+    @Test
+    void closedRingNotOpenedForWriting() throws Exception {
+        Path path = Files.createTempDirectory("ring").resolve("1.ring");
+        SharedMemoryRing reader = SharedMemoryRing.create(path, 32);
+        SharedMemoryRing writer = SharedMemoryRing.open(path, now);
+        reader.delete();
+
+        assertFalse(writer.isLive(now));
+        assertFalse(writer.write(frame("abc"), now));
+        assertNull(SharedMemoryRing.open(path, now));
+        writer.close();
+    }
+
+    @Test
+    void ringNotPolledAbandoned() throws Exception {
+        Path path = Files.createTempDirectory("ring").resolve("1.ring");
+        try (SharedMemoryRing reader = SharedMemoryRing.create(path, 32);
+             SharedMemoryRing writer = SharedMemoryRing.open(path, now)) {
+            long later = now + 2 * SharedMemoryRing.STALE_MILLIS;
+            assertTrue(writer.isLive(now));
+            assertFalse(writer.isLive(later), "ring must go stale without heartbeats");
+            assertFalse(writer.write(frame("abc"), later));
+            assertNull(SharedMemoryRing.open(path, later));
+
+            reader.read(frame -> { }, later);
+            assertTrue(writer.isLive(later));
+            assertTrue(writer.write(frame("abc"), later));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package edu.common.impl;
+
+import edu.common.api.Network;
+import edu.common.api.Payload;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShmNetworkTest {
+
+    private static final RemoteAddress address = new RemoteAddress("127.0.0.1", 12545);
+
+    private static Payload keyval(long seq) {
+        return Payload.of(new edu.kvstore.api.Message(
+                edu.kvstore.api.Message.Type.CREATE, seq, address, "key", "value-" + seq, false));
+    }
+
+    private static ShmNetwork makeNetwork(Path directory) {
+        return new ShmNetwork(directory, 4096, new BinaryCodec(), new UdpNetwork(), ListenerQueue::new);
+    }
+
+    @Test
+    void payloadsPassedThroughRingBetweenNetworks() throws Exception {
+        Path directory = Files.createTempDirectory("shm");
+        ShmNetwork receiving = makeNetwork(directory);
+        ShmNetwork sending = makeNetwork(directory); // as if in another process
+        Network.Listener listener = receiving.listen(address);
+        assertTrue(Files.exists(directory.resolve(address.port() + ".ring")));
+
+        for (long i=0; i<1000; i++) {
+            while (!sending.send(address, keyval(i))) {
+                Thread.sleep(1); // ring is full, let the receiver catch up
+            }
+        }
+        for (long i=0; i<1000; i++) {
+            assertEquals(keyval(i), listener.poll(1, TimeUnit.SECONDS));
+        }
+
+        listener.close();
+        sending.close();
+        receiving.close();
+    }
+
+    @Test
+    void fallsBackToUdpWhenListenerHasNoRing() throws Exception {
+        Path directory = Files.createTempDirectory("shm");
+        ShmNetwork sending = makeNetwork(directory);
+        ShmNetwork receiving = makeNetwork(directory);
+        Network.Listener shared = receiving.listen(address);
+        assertTrue(sending.send(address, keyval(1)));
+        assertEquals(keyval(1), shared.poll(1, TimeUnit.SECONDS));
+        shared.close();
+        receiving.close();
+
+        UdpNetwork udp = new UdpNetwork();
+        Network.Listener listener = udp.listen(address);
+        assertTrue(sending.send(address, keyval(2)));
+        assertEquals(keyval(2), listener.poll(1, TimeUnit.SECONDS));
+
+        listener.close();
+        udp.close();
+        sending.close();
+    }
+}
@@ -0,0 +1,82 @@
+package edu.common.impl;
+
+import edu.common.api.Network;
+import edu.common.api.Payload;
+import edu.membership.api.Member;
+import edu.membership.api.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TcpNetworkTest {
+
+    private static final RemoteAddress sender = new RemoteAddress("127.0.0.1", 12445);
+
+    private static Payload keyval(long seq, String value) {
+        return Payload.of(new edu.kvstore.api.Message(
+                edu.kvstore.api.Message.Type.CREATE, seq, sender, "key", value, false));
+    }
+
+    private static void await(Network.Listener listener, int count) throws InterruptedException {
+        for (int i=0; i<100 && listener.queue().size() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void networkSendsAndReceivesMessagesInOrder() throws Exception {
+        final TcpNetwork network = new TcpNetwork();
+        Network.Listener listener = network.listen(sender);
+
+        Payload members = Payload.of(new Message(
+                Message.Type.MEMBER_LIST,
+                new Member(sender, 20001000, 1000),
+                Arrays.asList(
+                        new Member(new RemoteAddress("127.0.0.1", 10000), 20001000, 1000),
+                        new Member(new RemoteAddress("127.0.0.1", 10001), 20001000, 1000))));
+        assertTrue(network.send(sender, members));
+        for (int i=0; i<1000; i++) {
+            assertTrue(network.send(sender, keyval(i, "v" + i)));
+        }
+
+        await(listener, 1001);
+        assertEquals(1001, listener.queue().size());
+        assertEquals(members, listener.queue().poll());
+        for (int i=0; i<1000; i++) {
+            assertEquals(keyval(i, "v" + i), listener.queue().poll());
+        }
+
+        listener.close();
+        network.close();
+    }
+
+    @Test
+    void largePayloadsAreFramed() throws Exception {
+        final TcpNetwork network = new TcpNetwork();
+        final RemoteAddress address = new RemoteAddress("127.0.0.1", 12446);
+        Network.Listener listener = network.listen(address);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<200000; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        List<Payload> payloads = new ArrayList<>();
+        for (int i=0; i<3; i++) {
+            payloads.add(keyval(i, sb.toString()));
+            assertTrue(network.send(address, payloads.get(i)));
+        }
+
+        await(listener, 3);
+        for (Payload p : payloads) {
+            assertEquals(p, listener.queue().poll());
+        }
+
+        listener.close();
+        network.close();
+    }
+}
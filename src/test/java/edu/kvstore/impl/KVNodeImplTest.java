@@ -2,18 +2,27 @@ package edu.kvstore.impl;
 
 import edu.common.api.Address;
 import edu.common.api.Network;
+import edu.common.api.Payload;
 import edu.common.impl.LocalAddress;
 import edu.common.impl.LocalNetwork;
+import edu.kvstore.api.Batch;
 import edu.kvstore.api.KVNode;
 import edu.kvstore.api.Message;
+import edu.kvstore.api.Replication;
 import edu.kvstore.api.Ring;
 import edu.membership.api.Member;
 import edu.membership.impl.GossipMembership;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class KVNodeImplTest {
     private static final int TIME_FAILED_MILLIS = 2000;
@@ -146,4 +155,466 @@ class KVNodeImplTest {
 
         assertEquals(message.fail(self), clientListener.queue().peek().keyval);
     }
+
+    @Test
+    void redirectClientToMaster() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(rep1, ring);
+
+        Network.Listener selfListener = network.listen(self);
+        Address client = makeAddress(20000);
+        Network.Listener clientListener = network.listen(client);
+
+        Message message = new Message(Message.Type.CREATE, 0L, client, "a", "a");
+        node.handle(message);
+
+        assertEquals(Message.Type.REDIRECT, clientListener.queue().peek().keyval.type);
+        assertEquals(self, clientListener.queue().peek().keyval.sender);
+        assertTrue(selfListener.queue().isEmpty());
+    }
+
+    @Test
+    void replicateAndRespondToBatch() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(self, ring);
+        KVNode rep1Node = makeNode(rep1, ring);
+        KVNode rep2Node = makeNode(rep2, ring);
+
+        Network.Listener selfListener = network.listen(self);
+        Network.Listener rep1Listener = network.listen(rep1);
+        Network.Listener rep2Listener = network.listen(rep2);
+
+        Address client = makeAddress(20000);
+        Network.Listener clientListener = network.listen(client);
+
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (int i=0; i<1000 && keys.size() < 10; i++) {
+            if (ring.pick("key-" + i, 0).equals(self)) {
+                keys.add("key-" + i);
+                values.add("value-" + i);
+            }
+        }
+        Batch batch = new Batch(Message.Type.CREATE, 0L, client, keys, values, false);
+        node.handle(batch);
+
+        Batch replica = batch.replica(self).accept(1);
+        assertEquals(replica, rep1Listener.queue().poll().message);
+        assertEquals(replica, rep2Listener.queue().poll().message);
+        rep1Node.handle(replica);
+        rep2Node.handle(replica);
+
+        node.handle((Batch) selfListener.queue().poll().message);
+        node.handle((Batch) selfListener.queue().poll().message);
+
+        assertEquals(batch.values(values).ok(self), clientListener.queue().poll().message);
+        assertTrue(selfListener.queue().isEmpty());
+
+        Batch read = new Batch(Message.Type.READ, 1L, client, keys);
+        rep1Node.handle(read);
+        assertEquals(read.redirect(self), clientListener.queue().poll().message);
+    }
+
+    private void deliver(Network.Listener listener, KVNode node) {
+        Payload payload;
+        while ((payload = listener.queue().poll()) != null) {
+            if (payload.keyval != null) node.handle(payload.keyval);
+            else node.handle((Batch) payload.message);
+        }
+    }
+
+    private List<String> keysOf(Ring<String> ring, Address master, int n) {
+        List<String> keys = new ArrayList<>();
+        for (int i=0; keys.size() < n; i++) {
+            if (ring.pick("key-" + i, 0).equals(master)) {
+                keys.add("key-" + i);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void batchRedirectedPerMasterOfKeys() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(self, ring);
+        Address client = makeAddress(20000);
+        Network.Listener clientListener = network.listen(client);
+
+        List<String> own = keysOf(ring, self, 2);
+        String other = keysOf(ring, rep1, 1).get(0);
+        Batch read = new Batch(Message.Type.READ, 1L, client, Arrays.asList(own.get(0), other, own.get(1)));
+        node.handle(read);
+
+        assertEquals(read.redirect(self, own), clientListener.queue().poll().message);
+        assertEquals(read.redirect(rep1, Collections.singletonList(other)), clientListener.queue().poll().message);
+        assertTrue(clientListener.queue().isEmpty());
+    }
+
+    @Test
+    void batchWaitsForWritesToAllItsKeys() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(self, ring);
+        KVNode rep1Node = makeNode(rep1, ring);
+        Network.Listener selfListener = network.listen(self);
+        Network.Listener rep1Listener = network.listen(rep1);
+        network.listen(rep2);
+        Address client = makeAddress(20000);
+        Network.Listener clientListener = network.listen(client);
+
+        List<String> keys = keysOf(ring, self, 2);
+        node.handle(new Message(Message.Type.CREATE, 1L, client, keys.get(0), "a"));
+        node.handle(new Message(Message.Type.CREATE, 2L, client, keys.get(1), "b"));
+        Batch batch = new Batch(Message.Type.UPDATE, 3L, client, keys, Arrays.asList("c", "d"), false);
+        node.handle(batch);
+
+        Message first = rep1Listener.queue().poll().keyval;
+        Message second = rep1Listener.queue().poll().keyval;
+        assertTrue(rep1Listener.queue().isEmpty());
+
+        rep1Node.handle(first);
+        deliver(selfListener, node);
+        assertEquals(Message.Type.OK, clientListener.queue().poll().keyval.type);
+        assertTrue(rep1Listener.queue().isEmpty(), "batch must wait for the write to its other key");
+
+        rep1Node.handle(second);
+        deliver(selfListener, node);
+        assertEquals(Message.Type.OK, clientListener.queue().poll().keyval.type);
+        assertEquals(batch.replica(self).accept(1), rep1Listener.queue().poll().message);
+    }
+
+    @Test
+    void requestsReleasedTogetherPendedApart() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(self, ring);
+        KVNode rep1Node = makeNode(rep1, ring);
+        Network.Listener selfListener = network.listen(self);
+        Network.Listener rep1Listener = network.listen(rep1);
+        network.listen(rep2);
+        Address client = makeAddress(20000);
+        Address other = makeAddress(20001);
+        Network.Listener clientListener = network.listen(client);
+        Network.Listener otherListener = network.listen(other);
+
+        String key = keysOf(ring, self, 1).get(0);
+        node.handle(new Message(Message.Type.CREATE, 1L, client, key, "a"));
+        node.handle(new Message(Message.Type.READ, 2L, client, key, null));
+        node.handle(new Batch(Message.Type.READ, 3L, other, Collections.singletonList(key)));
+        node.handle(new Message(Message.Type.READ, 4L, other, key, null));
+
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node); // create acknowledged, releases the reads and the batch
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node);
+
+        assertEquals(Message.Type.OK, clientListener.queue().poll().keyval.type);
+        Message read = clientListener.queue().poll().keyval;
+        assertEquals(Message.Type.OK, read.type);
+        assertEquals("a", read.value());
+        Batch batch = (Batch) otherListener.queue().poll().message;
+        assertEquals(Message.Type.OK, batch.type);
+        assertEquals(Collections.singletonList("a"), batch.values);
+        read = otherListener.queue().poll().keyval;
+        assertEquals(Message.Type.OK, read.type);
+        assertEquals(4L, read.seqNr);
+    }
+
+    @Test
+    void leaseRevokedOnWrite() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(self, ring);
+
+        Address reader = makeAddress(20000);
+        Address writer = makeAddress(20001);
+        Network.Listener readerListener = network.listen(reader);
+
+        node.handle(new Message(Message.Type.LEASE, 0L, reader, "a", null));
+        node.handle(new Message(Message.Type.READ, 0L, writer, "b", null));
+        assertTrue(readerListener.queue().isEmpty());
+
+        node.handle(new Message(Message.Type.UPDATE, 0L, writer, "b", "b"));
+        assertTrue(readerListener.queue().isEmpty(), "no lease on the key");
+
+        node.handle(new Message(Message.Type.UPDATE, 0L, writer, "a", "a"));
+        Message revoked = readerListener.queue().poll().keyval;
+        assertEquals(Message.Type.INVALIDATE, revoked.type);
+        assertEquals("a", revoked.key);
+    }
+
+    @Test
+    void writeAcknowledgedOnceRevocationConfirmed() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(self, ring);
+        KVNode rep1Node = makeNode(rep1, ring);
+        Network.Listener selfListener = network.listen(self);
+        Network.Listener rep1Listener = network.listen(rep1);
+        network.listen(rep2);
+        Address reader = makeAddress(20000);
+        Address writer = makeAddress(20001);
+        Network.Listener readerListener = network.listen(reader);
+        Network.Listener writerListener = network.listen(writer);
+
+        String key = keysOf(ring, self, 1).get(0);
+        node.handle(new Message(Message.Type.CREATE, 1L, writer, key, "a"));
+        node.handle(new Message(Message.Type.LEASE, 1L, reader, key, null));
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node);
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node);
+        assertEquals(Message.Type.OK, writerListener.queue().poll().keyval.type);
+        assertEquals("a", readerListener.queue().poll().keyval.value());
+
+        node.handle(new Message(Message.Type.UPDATE, 2L, writer, key, "b"));
+        Message revoked = readerListener.queue().poll().keyval;
+        assertEquals(Message.Type.INVALIDATE, revoked.type);
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node);
+        assertTrue(writerListener.queue().isEmpty(), "write must wait for the lease holder to confirm");
+
+        node.handle(new Message(Message.Type.INVALIDATE, revoked.seqNr, reader, key, null));
+        Message ok = writerListener.queue().poll().keyval;
+        assertEquals(Message.Type.OK, ok.type);
+        assertEquals(2L, ok.seqNr);
+    }
+
+    @Test
+    void writeAcknowledgedOnceLeaseExpiresIfInvalidateLost() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(self, ring);
+        KVNode rep1Node = makeNode(rep1, ring);
+        Network.Listener selfListener = network.listen(self);
+        Network.Listener rep1Listener = network.listen(rep1);
+        network.listen(rep2);
+        Address reader = makeAddress(20000);
+        Address writer = makeAddress(20001);
+        Network.Listener readerListener = network.listen(reader);
+        Network.Listener writerListener = network.listen(writer);
+
+        String key = keysOf(ring, self, 1).get(0);
+        node.handle(new Message(Message.Type.CREATE, 1L, writer, key, "a"));
+        node.handle(new Message(Message.Type.LEASE, 1L, reader, key, null));
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node);
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node);
+        assertEquals(Message.Type.OK, writerListener.queue().poll().keyval.type);
+        assertEquals("a", readerListener.queue().poll().keyval.value());
+
+        node.handle(new Message(Message.Type.UPDATE, 2L, writer, key, "b"));
+        assertEquals(Message.Type.INVALIDATE, readerListener.queue().poll().keyval.type); // lost on the way back
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node);
+        node.handle(new Message(Message.Type.READ, 2L, reader, key, null));
+
+        globalTime = KVNodeImpl.LEASE_MILLIS - 1;
+        node.cycle();
+        assertTrue(writerListener.queue().isEmpty(), "write must wait for the lease to expire");
+        assertTrue(rep1Listener.queue().isEmpty(), "the new value must not be read while the lease lasts");
+
+        globalTime = KVNodeImpl.LEASE_MILLIS;
+        node.cycle();
+        assertEquals(Message.Type.OK, writerListener.queue().poll().keyval.type);
+        deliver(rep1Listener, rep1Node);
+        deliver(selfListener, node);
+        Message read = readerListener.queue().poll().keyval;
+        assertEquals(Message.Type.OK, read.type);
+        assertEquals("b", read.value());
+    }
+
+    @Test
+    void newMasterWaitsForLeasesOfPreviousMaster() {
+        Address self = makeAddress(10000);
+        List<Address> others = new ArrayList<>();
+        List<Network.Listener> listeners = new ArrayList<>();
+        Ring<String> ring = makeRing(self, 10, 20);
+        ring.add(new Member(self, 0, 0), 0);
+        for (int i=1; i<=3; i++) {
+            others.add(makeAddress(10000 + i));
+            listeners.add(network.listen(others.get(i - 1)));
+            ring.add(new Member(others.get(i - 1), 0, 0), 0);
+        }
+        Replication<String, Address> replication = new RingReplication(REPLICATION_FACTOR, ring);
+
+        KVNode node = makeNode(self, ring);
+        Address writer = makeAddress(20000);
+        Network.Listener writerListener = network.listen(writer);
+
+        String key = null;
+        for (int i=0; key == null; i++) {
+            if (replication.pick("key-" + i, 0).get(1).equals(self)) {
+                key = "key-" + i;
+            }
+        }
+        Address master = replication.pick(key, 0).get(0);
+        node.handle(new Message(Message.Type.CREATE, 1L, master, key, "a").replica(master));
+
+        // the master fails, this node takes over the key
+        globalTime = 40;
+        for (Address address : others) {
+            if (!address.equals(master)) {
+                ring.add(new Member(address, globalTime, 1), globalTime);
+            }
+        }
+        ring.add(new Member(self, globalTime, 1), globalTime);
+        assertEquals(self, ring.pick(key, globalTime));
+        listeners.forEach(listener -> listener.queue().clear());
+
+        node.handle(new Message(Message.Type.UPDATE, 2L, writer, key, "b"));
+        for (Network.Listener listener : listeners) {
+            Payload payload = listener.queue().poll();
+            if (payload != null) {
+                node.handle(payload.keyval.ack());
+            }
+        }
+        assertTrue(writerListener.queue().isEmpty(), "write must wait for leases granted by the previous master");
+
+        globalTime = 40 + KVNodeImpl.LEASE_MILLIS;
+        node.cycle();
+        Message ok = writerListener.queue().poll().keyval;
+        assertEquals(Message.Type.OK, ok.type);
+        assertEquals(2L, ok.seqNr);
+    }
+
+    @Test
+    void respondOnTimeoutWithoutMessages() {
+        Address self = makeAddress(10000);
+        Address rep1 = makeAddress(10001);
+        Address rep2 = makeAddress(10002);
+        Ring<String> ring = makeRing(self);
+        ring.add(new Member(self, 0, 0), 0);
+        ring.add(new Member(rep1, 0, 0), 0);
+        ring.add(new Member(rep2, 0, 0), 0);
+
+        KVNode node = makeNode(self, ring);
+
+        Address client = makeAddress(20000);
+        Network.Listener clientListener = network.listen(client);
+
+        Message message = new Message(Message.Type.CREATE, 0L, client, "a", "a");
+        node.handle(message);
+
+        globalTime = TIMEOUT_MILLIS - 1;
+        node.cycle();
+        assertTrue(clientListener.queue().isEmpty());
+
+        globalTime = TIMEOUT_MILLIS;
+        node.cycle();
+        assertEquals(message.fail(self), clientListener.queue().poll().keyval);
+    }
+
+    @Test
+    void rebalanceOnMembershipChangeInCycle() {
+        Address self = makeAddress(10000);
+        List<Address> others = new ArrayList<>();
+        List<Network.Listener> listeners = new ArrayList<>();
+        Ring<String> ring = makeRing(self, 10, 20);
+        ring.add(new Member(self, 0, 0), 0);
+        for (int i=1; i<=3; i++) {
+            others.add(makeAddress(10000 + i));
+            listeners.add(network.listen(others.get(i - 1)));
+            ring.add(new Member(others.get(i - 1), 0, 0), 0);
+        }
+        Replication<String, Address> replication = new RingReplication(REPLICATION_FACTOR, ring);
+
+        KVNode node = makeNode(self, ring);
+
+        String key = null;
+        for (int i=0; key == null; i++) {
+            if (replication.pick("key-" + i, 0).contains(self)) {
+                key = "key-" + i;
+            }
+        }
+        List<Address> stored = replication.pick(key, 0);
+        Address master = stored.get(0).equals(self) ? stored.get(1) : stored.get(0);
+        node.handle(new Message(Message.Type.CREATE, 1L, master, key, "value").replica(master));
+        node.cycle();
+
+        // the member holding a copy fails, the others keep up heartbeats
+        globalTime = 40;
+        ring.add(new Member(self, globalTime, 1), globalTime);
+        for (Address address : others) {
+            if (!address.equals(master)) {
+                ring.add(new Member(address, globalTime, 1), globalTime);
+            }
+        }
+        listeners.forEach(listener -> listener.queue().clear());
+
+        node.handle(new Message(Message.Type.READ, 2L, makeAddress(20000), "other", null));
+        assertTrue(replications(listeners, key).isEmpty(), "no rebalancing on the request path");
+
+        node.cycle();
+        assertEquals(REPLICATION_FACTOR, ring.ordered(globalTime).size());
+        assertFalse(replications(listeners, key).isEmpty(), "key must be replicated to its new replicas");
+
+        node.cycle();
+        assertTrue(replications(listeners, key).isEmpty(), "nothing to rebalance without membership changes");
+    }
+
+    private List<Message> replications(List<Network.Listener> listeners, String key) {
+        List<Message> result = new ArrayList<>();
+        for (Network.Listener listener : listeners) {
+            while (!listener.queue().isEmpty()) {
+                Message message = listener.queue().poll().keyval;
+                if (message != null && message.type == Message.Type.REPLICATE && message.key.equals(key)) {
+                    result.add(message);
+                }
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,349 @@
+package edu.kvstore.impl;
+
+import edu.common.api.Address;
+import edu.common.api.Network;
+import edu.common.api.Payload;
+import edu.common.impl.LocalAddress;
+import edu.common.impl.LocalNetwork;
+import edu.common.impl.NodeImpl;
+import edu.common.impl.NodeRuntime;
+import edu.kvstore.api.Batch;
+import edu.kvstore.api.Message;
+import edu.kvstore.api.Ring;
+import edu.membership.api.Member;
+import edu.membership.impl.GossipMembership;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KVRemoteClientTest {
+
+    private final Network network = new LocalNetwork();
+    private final Address self = new LocalAddress(20000);
+    private final Address node = new LocalAddress(10000);
+
+    private List<Message> receive(Network.Listener listener, int n) throws InterruptedException {
+        List<Message> requests = new ArrayList<>(n);
+        while (requests.size() < n) {
+            Payload payload = listener.poll(1, TimeUnit.SECONDS);
+            assertTrue(payload != null, "request expected");
+            if (payload.keyval != null) {
+                requests.add(payload.keyval); // skip requests for the member list
+            }
+        }
+        return requests;
+    }
+
+    @Test
+    void repliesMatchedToRequestsBySeqNr() throws Exception {
+        Network.Listener server = network.listen(node);
+        KVRemoteClient client = new KVRemoteClient(self, Collections.singletonList(node), network, System::currentTimeMillis, 1000, 100);
+
+        List<CompletableFuture<String>> reads = new ArrayList<>();
+        for (int i=0; i<100; i++) {
+            reads.add(client.readAsync("key-" + i));
+        }
+        assertEquals(100, client.inFlight());
+
+        List<Message> requests = receive(server, 100);
+        Collections.reverse(requests);
+        for (Message request : requests) {
+            network.send(self, Payload.of(request.value(request.key.replace("key", "value")).ok(node)));
+        }
+
+        for (int i=0; i<100; i++) {
+            assertEquals("value-" + i, reads.get(i).get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(0, client.inFlight());
+
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void lateReplyNotTakenForNextRequest() throws Exception {
+        Network.Listener server = network.listen(node);
+        KVRemoteClient client = new KVRemoteClient(self, Collections.singletonList(node), network, System::currentTimeMillis, 50, 10);
+
+        CompletableFuture<String> first = client.readAsync("key");
+        assertNull(first.get(1, TimeUnit.SECONDS));
+        Message late = receive(server, 1).get(0);
+
+        CompletableFuture<Boolean> second = client.deleteAsync("key");
+        network.send(self, Payload.of(late.value("stale").ok(node)));
+        Message request = receive(server, 1).get(0);
+        assertFalse(second.isDone());
+
+        network.send(self, Payload.of(request.fail(node)));
+        assertFalse(second.get(1, TimeUnit.SECONDS));
+
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void windowLimitsRequestsInFlight() throws Exception {
+        Network.Listener server = network.listen(node);
+        KVRemoteClient client = new KVRemoteClient(self, Collections.singletonList(node), network, System::currentTimeMillis, 1000, 2);
+
+        client.createAsync("a", "1");
+        client.createAsync("b", "2");
+        CompletableFuture<CompletableFuture<Boolean>> third = CompletableFuture.supplyAsync(() -> client.createAsync("c", "3"));
+        List<Message> requests = receive(server, 2);
+        Thread.sleep(50);
+        assertFalse(third.isDone(), "third request must wait for room in the window");
+        assertEquals(2, client.inFlight());
+
+        network.send(self, Payload.of(requests.get(0).ok(node)));
+        Message last = receive(server, 1).get(0);
+        assertEquals("c", last.key);
+        network.send(self, Payload.of(last.ok(node)));
+        assertTrue(third.get(1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS));
+
+        client.close();
+        server.close();
+    }
+
+    private Address owner(List<Address> nodes, String key) {
+        Ring<String> ring = new HashRing(Byte.MAX_VALUE, new GossipMembership(self, Long.MAX_VALUE, 0L));
+        nodes.forEach(address -> ring.add(new Member(address, 0L, 0L), 0L));
+        return ring.pick(key, 0L);
+    }
+
+    @Test
+    void requestsSentToMasterOfKeyInView() throws Exception {
+        List<Address> nodes = new ArrayList<>();
+        List<Network.Listener> listeners = new ArrayList<>();
+        for (int i=0; i<5; i++) {
+            nodes.add(new LocalAddress(10000 + i));
+            listeners.add(network.listen(nodes.get(i)));
+        }
+        KVRemoteClient client = new KVRemoteClient(self, Collections.singletonList(nodes.get(0)), network, System::currentTimeMillis, 1000, 100);
+
+        Payload list = listeners.get(0).poll(1, TimeUnit.SECONDS);
+        assertEquals(edu.membership.api.Message.Type.LIST, list.member.type);
+        List<Member> members = new ArrayList<>();
+        nodes.forEach(address -> members.add(new Member(address, 0L, 0L)));
+        network.send(self, Payload.of(new edu.membership.api.Message(
+                edu.membership.api.Message.Type.MEMBER_LIST, members.get(0), members)));
+        for (int i=0; i<100 && client.view().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, client.view().size());
+
+        for (int i=0; i<20; i++) {
+            String key = "key-" + i;
+            client.readAsync(key);
+            Network.Listener master = listeners.get(nodes.indexOf(owner(nodes, key)));
+            assertEquals(key, receive(master, 1).get(0).key);
+        }
+
+        client.close();
+        for (Network.Listener listener : listeners) {
+            listener.close();
+        }
+    }
+
+    @Test
+    void largeBatchesSplitBySize() throws Exception {
+        Network.Listener server = network.listen(node);
+        KVRemoteClient client = new KVRemoteClient(self, Collections.singletonList(node), network, System::currentTimeMillis, 1000, 100);
+        server.poll(1, TimeUnit.SECONDS); // request for the member list
+        Member member = new Member(node, 0L, 0L);
+        network.send(self, Payload.of(new edu.membership.api.Message(
+                edu.membership.api.Message.Type.MEMBER_LIST, member, Collections.singletonList(member))));
+        for (int i=0; i<100 && client.view().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+
+        StringBuilder value = new StringBuilder();
+        for (int i=0; i<8 * 1024; i++) {
+            value.append('v');
+        }
+        Map<String, String> entries = new HashMap<>();
+        for (int i=0; i<10; i++) {
+            entries.put("key-" + i, value.toString());
+        }
+        client.multiPutAsync(entries);
+
+        int keys = 0;
+        int batches = 0;
+        while (keys < entries.size()) {
+            Payload payload = server.poll(1, TimeUnit.SECONDS);
+            assertTrue(payload != null, "batch expected");
+            Batch batch = (Batch) payload.message;
+            assertTrue(batch.keys.size() <= 3, "batch must stay within the size limit: " + batch.keys.size());
+            keys += batch.keys.size();
+            batches += 1;
+        }
+        assertTrue(batches >= 4);
+
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void batchSplitPerMasterOnRedirect() throws Exception {
+        Address master = new LocalAddress(10001);
+        Network.Listener server = network.listen(node);
+        Network.Listener masterServer = network.listen(master);
+        KVRemoteClient client = new KVRemoteClient(self, Collections.singletonList(node), network, System::currentTimeMillis, 1000, 100);
+        server.poll(1, TimeUnit.SECONDS); // request for the member list
+        Member member = new Member(node, 0L, 0L);
+        network.send(self, Payload.of(new edu.membership.api.Message(
+                edu.membership.api.Message.Type.MEMBER_LIST, member, Collections.singletonList(member))));
+        for (int i=0; i<100 && client.view().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+
+        CompletableFuture<Map<String, String>> read = client.multiGetAsync(Arrays.asList("a", "b", "c"));
+        Batch batch = (Batch) server.poll(1, TimeUnit.SECONDS).message;
+        assertEquals(Arrays.asList("a", "b", "c"), batch.keys);
+        network.send(self, Payload.of(batch.redirect(node, Arrays.asList("a", "c"))));
+        network.send(self, Payload.of(batch.redirect(master, Collections.singletonList("b"))));
+
+        Batch own = nextBatch(server);
+        assertEquals(Arrays.asList("a", "c"), own.keys);
+        Batch other = nextBatch(masterServer);
+        assertEquals(Collections.singletonList("b"), other.keys);
+        network.send(self, Payload.of(other.values(Collections.singletonList("2")).ok(master)));
+        assertFalse(read.isDone());
+        network.send(self, Payload.of(own.values(Arrays.asList("1", "3")).ok(node)));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("a", "1");
+        expected.put("b", "2");
+        expected.put("c", "3");
+        assertEquals(expected, read.get(1, TimeUnit.SECONDS));
+        assertEquals(0, client.inFlight());
+
+        client.close();
+        server.close();
+        masterServer.close();
+    }
+
+    private Batch nextBatch(Network.Listener listener) throws InterruptedException {
+        while (true) {
+            Payload payload = listener.poll(1, TimeUnit.SECONDS);
+            assertTrue(payload != null, "batch expected");
+            if (payload.message instanceof Batch) {
+                return (Batch) payload.message; // skip requests for the member list
+            }
+        }
+    }
+
+    @Test
+    void redirectFollowedToMaster() throws Exception {
+        Address master = new LocalAddress(10001);
+        Network.Listener server = network.listen(node);
+        Network.Listener masterServer = network.listen(master);
+        KVRemoteClient client = new KVRemoteClient(self, Collections.singletonList(node), network, System::currentTimeMillis, 1000, 100);
+
+        CompletableFuture<Boolean> update = client.updateAsync("key", "value");
+        Message request = receive(server, 1).get(0);
+        network.send(self, Payload.of(request.redirect(master)));
+
+        Message redirected = receive(masterServer, 1).get(0);
+        assertEquals(request, redirected);
+        network.send(self, Payload.of(redirected.ok(master)));
+        assertTrue(update.get(1, TimeUnit.SECONDS));
+
+        Payload list = masterServer.poll(1, TimeUnit.SECONDS);
+        assertEquals(edu.membership.api.Message.Type.LIST, list.member.type, "view must be fetched from the master");
+
+        client.close();
+        server.close();
+        masterServer.close();
+    }
+
+    private List<NodeRuntime> startCluster(List<Network.Node> nodes) throws InterruptedException {
+        List<NodeRuntime> runtimes = new ArrayList<>();
+        for (int i=0; i<3; i++) {
+            Address address = new LocalAddress(10000 + i);
+            Network.Node n = new NodeImpl(address, network, System::currentTimeMillis, 2000, 3000, 1000, 3);
+            nodes.add(n);
+            runtimes.add(new NodeRuntime(n, network.listen(address), 10).start());
+            n.join(nodes.get(0).address());
+        }
+        for (int i=0; i<500 && nodes.stream().anyMatch(n -> n.peers().size() < 3); i++) {
+            Thread.sleep(10);
+        }
+        return runtimes;
+    }
+
+    private KVRemoteClient startClient(Address address, Address node, int cacheSize) throws InterruptedException {
+        KVRemoteClient client = new KVRemoteClient(address, Collections.singletonList(node), network, System::currentTimeMillis, 1000, 100, cacheSize);
+        for (int i=0; i<500 && client.view().size() < 3; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, client.view().size());
+        return client;
+    }
+
+    @Test
+    void batchesAppliedByMastersOfKeys() throws Exception {
+        List<Network.Node> nodes = new ArrayList<>();
+        List<NodeRuntime> runtimes = startCluster(nodes);
+        KVRemoteClient client = startClient(self, nodes.get(0).address(), 0);
+
+        Map<String, String> entries = new HashMap<>();
+        for (int i=0; i<300; i++) {
+            entries.put("key-" + i, "value-" + i);
+        }
+        Map<String, Boolean> put = client.multiPut(entries);
+        assertEquals(300, put.size());
+        assertTrue(put.values().stream().allMatch(ok -> ok));
+        assertEquals(entries, client.multiGet(entries.keySet()));
+        assertEquals("value-7", client.read("key-7"));
+
+        Map<String, Boolean> deleted = client.multiDelete(entries.keySet());
+        assertTrue(deleted.values().stream().allMatch(ok -> ok));
+        assertTrue(client.multiGet(entries.keySet()).isEmpty());
+
+        client.close();
+        for (NodeRuntime runtime : runtimes) {
+            runtime.close();
+        }
+    }
+
+    @Test
+    void cachedReadsRevokedOnUpdateByOtherClient() throws Exception {
+        List<Network.Node> nodes = new ArrayList<>();
+        List<NodeRuntime> runtimes = startCluster(nodes);
+        KVRemoteClient reader = startClient(self, nodes.get(0).address(), 100);
+        KVRemoteClient writer = startClient(new LocalAddress(20001), nodes.get(0).address(), 0);
+
+        assertTrue(writer.create("key", "1"));
+        assertEquals("1", reader.read("key"));
+        assertEquals("1", reader.read("key"));
+        assertEquals(1, reader.cache().hits());
+
+        assertTrue(writer.update("key", "2"));
+        for (int i=0; i<100 && reader.cache().revocations() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, reader.cache().revocations());
+        assertEquals("2", reader.read("key"));
+
+        assertTrue(reader.update("key", "3"));
+        assertEquals("3", reader.read("key"), "own write must not be read from the cache");
+
+        reader.close();
+        writer.close();
+        for (NodeRuntime runtime : runtimes) {
+            runtime.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package edu.kvstore.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LeaseCacheTest {
+
+    @Test
+    void valueServedUntilLeaseExpires() {
+        LeaseCache cache = new LeaseCache(10, 100);
+        assertNull(cache.get("key", 0));
+        cache.put("key", "value", 0, 1000);
+        assertEquals("value", cache.get("key", 10));
+        assertEquals("value", cache.get("key", 999));
+        assertNull(cache.get("key", 1000));
+
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(0.5, cache.hitRate());
+        assertEquals(999, cache.maxAgeMillis());
+    }
+
+    @Test
+    void revokedValueNotServedNorCachedFromEarlierRead() {
+        LeaseCache cache = new LeaseCache(10, 100);
+        cache.put("key", "value", 0, 1000);
+        cache.revoke("key", 20);
+        assertNull(cache.get("key", 30));
+        assertEquals(1, cache.revocations());
+
+        cache.put("key", "value", 10, 1010); // read sent before the revocation
+        assertNull(cache.get("key", 40));
+        cache.put("key", "updated", 30, 1030);
+        assertEquals("updated", cache.get("key", 50));
+    }
+
+    @Test
+    void hotKeysNotEvictedByOneOffReads() {
+        LeaseCache cache = new LeaseCache(4, 100);
+        for (int i=0; i<4; i++) {
+            String key = "hot-" + i;
+            for (int j=0; j<5; j++) {
+                cache.get(key, 0);
+            }
+            cache.put(key, "value", 0, 1000);
+        }
+        for (int i=0; i<100; i++) {
+            String key = "cold-" + i;
+            cache.get(key, 0);
+            cache.put(key, "value", 0, 1000);
+        }
+        for (int i=0; i<4; i++) {
+            assertEquals("value", cache.get("hot-" + i, 1));
+        }
+        assertEquals(4, cache.size());
+        assertEquals(100, cache.rejections());
+    }
+}
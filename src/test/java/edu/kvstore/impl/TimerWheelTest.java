@@ -0,0 +1,58 @@
+package edu.kvstore.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimerWheelTest {
+
+    @Test
+    void itemsExpireAtTheirDeadline() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(1, 16, 0);
+        wheel.schedule(5, 1);
+        wheel.schedule(10, 2);
+        wheel.schedule(10, 3);
+
+        List<Integer> expired = new ArrayList<>();
+        assertEquals(0, wheel.expire(4, expired::add));
+        assertEquals(1, wheel.expire(5, expired::add));
+        assertEquals(Collections.singletonList(1), expired);
+        assertEquals(0, wheel.expire(9, expired::add));
+        assertEquals(2, wheel.expire(10, expired::add));
+        assertEquals(Arrays.asList(1, 2, 3), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void itemsDueInLaterRotationStayInSlot() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(1, 16, 0);
+        wheel.schedule(3, 1);
+        wheel.schedule(3 + 16, 2);
+        wheel.schedule(3 + 64, 3);
+
+        List<Integer> expired = new ArrayList<>();
+        wheel.expire(10, expired::add);
+        assertEquals(Collections.singletonList(1), expired);
+        wheel.expire(20, expired::add);
+        assertEquals(Arrays.asList(1, 2), expired);
+        assertEquals(1, wheel.size());
+
+        wheel.expire(1000, expired::add); // idle for many rotations
+        assertEquals(Arrays.asList(1, 2, 3), expired);
+    }
+
+    @Test
+    void pastDeadlineExpiresOnNextTick() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(10, 16, 100);
+        wheel.schedule(50, 1);
+        List<Integer> expired = new ArrayList<>();
+        assertEquals(0, wheel.expire(105, expired::add));
+        assertEquals(1, wheel.expire(110, expired::add));
+        assertEquals(Collections.singletonList(1), expired);
+    }
+}
@@ -77,4 +77,18 @@ class GossipMembershipTest {
         assertEquals(10, list.get(0).heartbeat);
         assertEquals(10, list.get(0).timestamp);
     }
+
+    @Test
+    void removedMembersReportedAsFailed() {
+        Address self = new LocalAddress(0);
+        Membership membership = new GossipMembership(self, 10, 20);
+        Member member = new Member(self, 0, 0);
+        membership.add(member, 0);
+        Member other = new Member(new LocalAddress(1), 0, 0);
+        membership.add(other, 0);
+
+        assertTrue(membership.failed(15).isEmpty());
+        assertEquals(Collections.singletonList(other), membership.failed(30));
+        assertEquals(Collections.singletonList(member), membership.list(30));
+    }
 }
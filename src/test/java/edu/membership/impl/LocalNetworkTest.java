@@ -9,7 +9,10 @@ import edu.common.api.Network;
 import edu.membership.api.Message;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -43,4 +46,66 @@ class LocalNetworkTest {
         assertTrue(listener.queue().isEmpty());
     }
 
+    @Test
+    void routeFollowsListenerOfAddress() throws Exception {
+        final LocalNetwork localNetwork = new LocalNetwork();
+        Address address = new LocalAddress(0);
+        LocalNetwork.Route route = localNetwork.route(address);
+        assertFalse(route.send(Payload.of(MESSAGE)));
+
+        Network.Listener listener = localNetwork.listen(address);
+        assertTrue(route.send(Payload.of(MESSAGE)));
+        assertEquals(2, route.send(Arrays.asList(Payload.of(MESSAGE), Payload.of(MESSAGE))));
+        assertEquals(3, listener.queue().size());
+        listener.close();
+
+        Network.Listener reopened = localNetwork.listen(address);
+        assertTrue(route.send(Payload.of(MESSAGE)));
+        assertEquals(1, reopened.queue().size());
+    }
+
+    @Test
+    void routesNotLeftBehindBySends() throws Exception {
+        final LocalNetwork localNetwork = new LocalNetwork();
+        for (int i=0; i<100; i++) {
+            assertFalse(localNetwork.send(new LocalAddress(i), Payload.of(MESSAGE)));
+        }
+        assertEquals(0, localNetwork.routes());
+
+        Address address = new LocalAddress(0);
+        Network.Listener listener = localNetwork.listen(address);
+        assertEquals(1, localNetwork.routes());
+        listener.close();
+        assertEquals(0, localNetwork.routes());
+
+        LocalNetwork.Route route = localNetwork.route(address);
+        localNetwork.listen(address).close();
+        assertEquals(1, localNetwork.routes(), "a route kept by a sender stays");
+        Network.Listener reopened = localNetwork.listen(address);
+        assertTrue(route.send(Payload.of(MESSAGE)));
+        assertEquals(1, reopened.queue().size());
+    }
+
+    @Test
+    void handlerCalledSynchronouslyWithoutNesting() throws Exception {
+        final LocalNetwork localNetwork = new LocalNetwork();
+        Address first = new LocalAddress(1);
+        Address second = new LocalAddress(2);
+        List<String> events = new ArrayList<>();
+
+        localNetwork.listen(first, payload -> {
+            events.add("first:start");
+            localNetwork.send(second, payload);
+            localNetwork.send(second, payload);
+            events.add("first:end");
+        });
+        AutoCloseable listener = localNetwork.listen(second, payload -> events.add("second"));
+
+        assertTrue(localNetwork.send(first, Payload.of(MESSAGE)));
+        assertEquals(Arrays.asList("first:start", "first:end", "second", "second"), events);
+
+        listener.close();
+        assertFalse(localNetwork.send(second, Payload.of(MESSAGE)));
+    }
+
 }
@@ -1,6 +1,9 @@
 package edu.membership.impl;
 
 import edu.common.api.Payload;
+import edu.common.impl.BinaryCodec;
+import edu.common.impl.ListenerQueue;
+import edu.common.impl.Pipeline;
 import edu.common.impl.RemoteAddress;
 import edu.common.impl.UdpNetwork;
 import edu.membership.api.Member;
@@ -8,10 +11,15 @@ import edu.common.api.Network;
 import edu.membership.api.Message;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class UdpNetworkTest {
 
@@ -60,4 +68,149 @@ class UdpNetworkTest {
             /* close */
         }
     }
+
+    @Test
+    void listenersShareReceiverAndReleasePortOnClose() throws Exception {
+        final UdpNetwork network = new UdpNetwork(1, 1);
+        final RemoteAddress first = new RemoteAddress("127.0.0.1", 12346);
+        final RemoteAddress second = new RemoteAddress("127.0.0.1", 12347);
+
+        Network.Listener firstListener = network.listen(first);
+        Network.Listener secondListener = network.listen(second);
+
+        network.send(first, payloads.get(0));
+        network.send(second, payloads.get(1));
+        Thread.sleep(100);
+
+        assertEquals(payloads.get(0), firstListener.queue().poll());
+        assertEquals(payloads.get(1), secondListener.queue().poll());
+
+        firstListener.close();
+        Network.Listener reopened = network.listen(first);
+        network.send(first, payloads.get(1));
+        Thread.sleep(100);
+        assertEquals(payloads.get(1), reopened.queue().poll());
+
+        reopened.close();
+        secondListener.close();
+        network.close();
+    }
+
+    @Test
+    void largePayloadsFragmentedAndReassembled() throws Exception {
+        final UdpNetwork network = new UdpNetwork();
+        final RemoteAddress address = new RemoteAddress("127.0.0.1", 12348);
+        Network.Listener listener = network.listen(address);
+
+        List<Member> members = new ArrayList<>();
+        for (int i=0; i<500; i++) {
+            members.add(new Member(new RemoteAddress("10.0.1." + (i % 100), 10000 + i), 20001000 + i, i));
+        }
+        StringBuilder value = new StringBuilder();
+        for (int i=0; i<10000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+
+        List<Payload> large = Arrays.asList(
+                Payload.of(new Message(Message.Type.MEMBER_LIST, new Member(sender, 20001000, 1000), members)),
+                Payload.of(new edu.kvstore.api.Message(
+                        edu.kvstore.api.Message.Type.CREATE, 1L, sender, "key", value.toString(), false)));
+
+        for (Payload p : large) {
+            assertTrue(network.send(address, p));
+            Thread.sleep(100);
+            assertEquals(p, listener.queue().poll());
+        }
+
+        listener.close();
+        network.close();
+    }
+
+    @Test
+    void payloadsCoalescedPerTarget() throws Exception {
+        final UdpNetwork network = new UdpNetwork(new BinaryCodec(), 1, 1, 10000, 1400);
+        final RemoteAddress address = new RemoteAddress("127.0.0.1", 12349);
+        Network.Listener listener = network.listen(address);
+
+        for (int i=0; i<100; i++) {
+            assertTrue(network.send(address, payloads.get(i % payloads.size())));
+        }
+        Thread.sleep(100);
+
+        assertEquals(100, listener.queue().size());
+        for (int i=0; i<100; i++) {
+            assertEquals(payloads.get(i % payloads.size()), listener.queue().poll());
+        }
+        assertEquals(100, network.coalescer().payloads());
+        assertTrue(network.coalescer().flushes() < 10, "payloads must be packed into few datagrams");
+
+        listener.close();
+        network.close();
+    }
+
+    @Test
+    void oversizedPayloadSentAfterPendingBatch() throws Exception {
+        final UdpNetwork network = new UdpNetwork(new BinaryCodec(), 1, 1, 100000, 1400);
+        final RemoteAddress address = new RemoteAddress("127.0.0.1", 12352);
+        Network.Listener listener = network.listen(address);
+
+        StringBuilder value = new StringBuilder();
+        for (int i=0; i<2000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        Payload large = Payload.of(new edu.kvstore.api.Message(
+                edu.kvstore.api.Message.Type.CREATE, 1L, sender, "key", value.toString(), false));
+
+        assertTrue(network.send(address, payloads.get(0)));
+        assertTrue(network.send(address, large));
+        assertTrue(network.send(address, payloads.get(1)));
+
+        assertEquals(payloads.get(0), listener.poll(1, TimeUnit.SECONDS));
+        assertEquals(large, listener.poll(1, TimeUnit.SECONDS));
+        assertEquals(payloads.get(1), listener.poll(1, TimeUnit.SECONDS));
+
+        listener.close();
+        network.close();
+    }
+
+    @Test
+    void payloadsHandedToHandlerOverRingBuffer() throws Exception {
+        final UdpNetwork network = new UdpNetwork();
+        final RemoteAddress address = new RemoteAddress("127.0.0.1", 12350);
+        final BlockingQueue<Payload> received = new LinkedBlockingQueue<>();
+        Pipeline pipeline = network.listen(address, received::offer, 16, Pipeline.WaitStrategy.PARK);
+
+        for (int i=0; i<100; i++) {
+            assertTrue(network.send(address, payloads.get(i % payloads.size())));
+            assertEquals(payloads.get(i % payloads.size()), received.poll(1, TimeUnit.SECONDS));
+        }
+        pipeline.close();
+        network.close();
+
+        assertEquals(100, pipeline.published());
+        assertEquals(100, pipeline.handled());
+        assertEquals(0, pipeline.dropped());
+    }
+
+    @Test
+    void listenerReceivesOnSharedPortInSenderOrder() throws Exception {
+        final UdpNetwork network = new UdpNetwork(new BinaryCodec(), 1, 4, 0, 1400, ListenerQueue::new, true);
+        final RemoteAddress address = new RemoteAddress("127.0.0.1", 12351);
+        Network.Listener listener = network.listen(address);
+
+        for (int i=0; i<1000; i++) {
+            assertTrue(network.send(address, Payload.of(new edu.kvstore.api.Message(
+                    edu.kvstore.api.Message.Type.READ, i, sender, "key", null))));
+            if (i % 100 == 99) {
+                Thread.sleep(10); // stay within socket receive buffer
+            }
+        }
+        for (int i=0; i<1000; i++) {
+            Payload received = listener.poll(1, TimeUnit.SECONDS);
+            assertEquals((long) i, received.keyval.seqNr);
+        }
+
+        listener.close();
+        network.close();
+    }
 }